@@ -1,221 +1,371 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * A Connect-4 player that chooses the best move immediately available 
- * 
+ * A Connect-4 player that uses iterative-deepening alpha-beta search
+ *
  * @author Alexis Pak
  *
  */
-public class AlphaBeta implements Player {
+public class AlphaBeta implements Player, Instrumented, GameAware {
 
-	private static java.util.Random rand = new java.util.Random();
 	int id;
 	int opponent_id;
 	int cols;
 
+	// Scores are connect-4 differences, so these are well outside any real score.
+	static final int INFINITY = Searcher.INFINITY;
+	// Half-width of the aspiration window around the previous iteration's score.
+	static final int ASPIRATION = 2;
+
+	// Transposition table, shared across the iterations and moves of a game.
+	// Size and replacement policy come from the connect4.tt.mb (0 to turn
+	// the table off) and connect4.tt.replace (depth or always) properties.
+	TranspositionTable tt;
+
+	// The search itself.  Move ordering is center-out, killer moves and
+	// history; set the connect4.ordering property to "plain" to search
+	// columns left to right.
+	Searcher searcher;
+
+	// Parallel root search.  With connect4.threads > 1 the first root column
+	// is searched here and the others are split across a ForkJoinPool, each
+	// with its own Searcher and board copy but sharing the table.
+	int threads;
+	private Searcher[] rootSearchers;
+	private ForkJoinPool pool;
+	private static final SharedPool sharedPool = new SharedPool();
+
+	// Exact endgame solver, used once no more than solverEmptyCells cells
+	// are empty.  By default that depends on the time per move (see
+	// solverEmptyCells()); connect4.solver.empty fixes it, 0 to turn the
+	// solver off.  It needs to know which game is being played, which the
+	// game tells us through setGame(); without that there is no solver.
+	// Its table is only allocated once a game gets that far.
+	EndgameSolver solver;
+	int solverEmptyCells;
+	String game;
+	// Depth searched before the solver starts, so that the move in place
+	// if the solver runs out of time is a searched one.
+	static final int PRESOLVE_DEPTH = 6;
+
+	// Decides when to stop deepening, so that we don't start an iteration
+	// we can't finish.  Set connect4.time to "all" to search until time
+	// is up instead.
+	TimeManager time;
+
+	// What the current (or last) move's search did.  The counts are taken
+	// as the difference from the searchers' running totals at the start.
+	private final SearchStats stats = new SearchStats();
+	private final SearchStats before = new SearchStats();
+
 
 	@Override
 	public String name() {
 		return "Balph";
 	}
 
+	@Override
+	public void setGame(String game) {
+		this.game = game;
+	}
+
 	@Override
 	public void init(int id, int msecPerMove, int rows, int cols) {
 		this.id = id; //id is your player's id, opponent's id is 3-id
 		opponent_id = 3 -id;
 		this.cols = cols;
+		int megabytes = Integer.getInteger("connect4.tt.mb", 16);
+		int policy = "always".equals(System.getProperty("connect4.tt.replace"))
+				? TranspositionTable.REPLACE_ALWAYS : TranspositionTable.REPLACE_DEPTH;
+		tt = (megabytes > 0) ? new TranspositionTable(megabytes, policy) : null;
+		boolean ordering = !"plain".equals(System.getProperty("connect4.ordering"));
+		searcher = new Searcher(id, rows, cols, tt, ordering);
+		threads = rootThreads();
+		if (threads > 1) {
+			rootSearchers = new Searcher[cols];
+			for(int col = 0; col < cols; col++) {
+				rootSearchers[col] = new Searcher(id, rows, cols, tt, ordering);
+			}
+			pool = sharedPool.get(threads);
+		}
+		time = "all".equals(System.getProperty("connect4.time")) ? null : new TimeManager(msecPerMove);
+		solverEmptyCells = Integer.getInteger("connect4.solver.empty", solverEmptyCells(msecPerMove));
+		if (solverEmptyCells > 0 && game == null) {
+			// Solving the wrong game would be worse than not solving.
+			EventLog.warn("solver.off", "player", id,
+					"msg", "Not told which game is being played; no endgame solver.");
+			solverEmptyCells = 0;
+		}
+		solver = null;
+	}
+
+	// The most empty cells the solver can be expected to finish with in
+	// half the move time.  On 6x7 the slow positions of the "most" game
+	// take about 25 ms at 16 empty cells, and twice as long for each cell
+	// more, so that is 16 cells at 50 ms, one more for each doubling of
+	// the time and one less for each halving.
+	static int solverEmptyCells(int msecPerMove) {
+		if (msecPerMove <= 0) return 0;
+		return Math.max(0, 16 + (int) Math.floor(Math.log(msecPerMove / 50.0) / Math.log(2)));
+	}
+
+	// Number of threads to split the root across.
+	int rootThreads() {
+		return Math.max(1, Integer.getInteger("connect4.threads", 1));
 	}
 
 	@Override
 	public void calcMove(
-			Connect4Board board, int oppMoveCol, Arbitrator arb) 
+			Connect4Board board, int oppMoveCol, Arbitrator arb)
 					throws TimeUpException {
 		// Make sure there is room to make a move.
 		if (board.isFull()) {
 			throw new Error ("Complaint: The board is full!");
 		}
-		int maxDepth = 1;
-
-		//While there is time remaining and search depth is <= the number of moves remaining
-		int bestCol = -1, bestScore = -1;
-		//Have alphabeta start at a random place instead of starting at the same column
-		int startCol = rand.nextInt(board.numCols());
-		while(!arb.isTimeUp() && maxDepth <= board.numEmptyCells()) {
-			bestScore = -100;
-			for(int col1 = 0; col1 < board.numCols(); col1++) {
-				int col = (col1 + startCol) % board.numCols();
-				System.out.println("col = " + col + ", maxDepth = " + maxDepth + ", bestCol = " + bestCol + ", bestScore = " + bestScore);
-				if (board.isValidMove(col)) {
-					board.move(col, id);
-					int score = alphabeta(board, maxDepth -1, α, β, false, arb);
-					if(score > bestScore) {
-						bestCol = col;
-						bestScore = score;
-					}
-					board.unmove(col, id);
-				}
-			}
-			//run the first level of the alphabeta search and set move to be the best column corresponding to be best score
-			//
-			maxDepth++; 
-			arb.setMove(bestCol);
+		newSearch();
+		mainSearch(board, arb);
 	}
-		if (bestCol >= 0) {
-			System.out.println("bestCol = " + bestCol);
-			arb.setMove(bestCol);
-			System.out.println("arb.getMove = " + arb.getMove());
+
+	// Get ready for a new move: age the table and reset the move ordering.
+	void newSearch() {
+		before.start();
+		count(before);
+		stats.start();
+		if (tt != null) {
+			tt.newSearch();
 		}
-		else {
-			throw new Error ("Complaint: Something is wrong!");
+		searcher.orderer.newSearch();
+		if (rootSearchers != null) {
+			for (Searcher s : rootSearchers) s.orderer.newSearch();
 		}
 	}
 
-	public int alphabeta(Connect4Board board, int depth, int α, int β, boolean isMaximizing, Arbitrator arb) {
-		//		if depth = 0 or no moves or time is up
-		//				return the heuristic value of node
-
-		if (depth == 0 || board.isFull() || arb.isTimeUp()) {
-			return calcScore(board,id) - calcScore(board, opponent_id);
+	// Iterative deepening on this thread until time is up, reporting the
+	// best move of each iteration to the arbitrator.
+	void mainSearch(Connect4Board board, Arbitrator arb) {
+		// Root columns in the order we will search them.
+		int n = searcher.orderer.order(board, 0, id, -1, -1);
+		int[] order = java.util.Arrays.copyOf(searcher.orderer.moves(0), n);
+		searcher.pv = new int[0];
+		if (time != null) {
+			time.start(arb);
 		}
-		//	if isMaximizing then
-		if (isMaximizing) {
-			int bestScore = - 1000;
-			for(int col = 0; col < board.numCols(); col++) {
-				if (board.isValidMove(col)) {
-					board.move(col, id);
-
-					bestScore = Math.max(bestScore, alphabeta(board, depth -1, α, β, false, arb));
-					α = Math.max(α, bestScore);
-					if(α >= β) {
-						break; 
-					}
-					board.unmove(col, id);
 
-				} 
+		try {
+			arb.setMove(order[0]);
+			// Near the end of the game, play perfectly instead of guessing.
+			if (solverEmptyCells > 0 && board.numEmptyCells() <= solverEmptyCells) {
+				if (solver == null) {
+					solver = new EndgameSolver(game, Integer.getInteger("connect4.solver.mb", 16));
+				}
+				// A shallow search first: if the solver doesn't finish in
+				// time, its move is the one that gets played.
+				deepen(searcher, board, order, n, 1,
+						Math.min(PRESOLVE_DEPTH, board.numEmptyCells()), arb, true);
+				int score = solver.solve(board, id, arb);
+				arb.setMove(solver.bestMove(board, id, score, arb));
+				arb.setProgress(board.numEmptyCells(), score);
+				stats.iterationDone(board.numEmptyCells());
+				return;
 			}
-			return bestScore;
+			deepen(searcher, board, order, n, 1, arb, true);
+		}
+		catch (TimeUpException e) {
+			// The unfinished iteration is thrown away; the game already has
+			// the move from the last one that completed.
 		}
+		finally {
+			stats.stop();
+		}
+	}
 
-		else {
-			int bestScore = 1000;
-			for(int col = 0; col < board.numCols(); col++) {
-				if (board.isValidMove(col)) {
+	// Iterative deepening with searcher s, from startDepth up to the number
+	// of empty cells.  The best column of each iteration moves to the front
+	// of order for the next one.  Only the main search reports its moves to
+	// the arbitrator and may split the root across threads.
+	void deepen(Searcher s, Connect4Board board, int[] order, int n, int startDepth, Arbitrator arb, boolean main)
+			throws TimeUpException {
+		deepen(s, board, order, n, startDepth, board.numEmptyCells(), arb, main);
+	}
 
-					board.move(col, opponent_id);
-			
-					bestScore = Math.min(bestScore, alphabeta(board, depth -1, α, β, true, arb));
-					β = Math.min(β, bestScore);
-					if(α >= β) {
-						break; 
-					}
-					board.unmove(col, opponent_id);
+	// Same, but stop after lastDepth.
+	void deepen(Searcher s, Connect4Board board, int[] order, int n, int startDepth, int lastDepth, Arbitrator arb, boolean main)
+			throws TimeUpException {
+		int bestScore = 0;
+		//While there is time remaining and search depth is <= the number of moves remaining
+		for(int maxDepth = startDepth; maxDepth <= lastDepth; maxDepth++) {
+			// Search a narrow window around the last score first, and only
+			// widen it if the true score falls outside.
+			int α = (maxDepth == startDepth) ? -INFINITY : bestScore - ASPIRATION;
+			int β = (maxDepth == startDepth) ? INFINITY : bestScore + ASPIRATION;
+			int score;
+			while (true) {
+				score = (main && threads > 1 && n > 1)
+						? searchRootParallel(board, order, n, maxDepth, α, β, arb)
+						: s.searchRoot(board, order, n, maxDepth, α, β, arb);
+				if (score <= α && α > -INFINITY) α = -INFINITY;
+				else if (score >= β && β < INFINITY) β = INFINITY;
+				else break;
+			}
+			bestScore = score;
+			moveToFront(order, n, s.rootBestCol);
+			s.pv = s.principalVariation(board, s.rootBestCol, maxDepth);
+			if (EventLog.TRACE) {
+				EventLog.trace("iteration", "player", id, "main", main, "depth", maxDepth,
+						"score", score, "col", s.rootBestCol, "nodes", s.nodes);
+			}
+			if (main) {
+				arb.setMove(s.rootBestCol);
+				arb.setProgress(maxDepth, score);
+				stats.iterationDone(maxDepth);
+				if (time != null) {
+					time.iterationDone(s.rootBestCol);
+					if (time.shouldStop()) break;
 				}
 			}
-			return bestScore;
 		}
 	}
 
-	// return the number of connect-4s that player #id has.
-	public int calcWinner(Connect4Board board)
-	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int winner = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
+	// Same as Searcher.searchRoot(), but only the first column is searched on
+	// this thread.  The rest run as ForkJoin tasks on board copies, each
+	// starting from the best score reported so far by any task.
+	private int searchRootParallel(Connect4Board board, int[] order, int n, int depth, int α, int β, Arbitrator arb)
+			throws TimeUpException {
+		int bestScore = searcher.searchChild(board, order[0], depth, α, β, true, arb);
+		searcher.rootBestCol = order[0];
+		if (bestScore >= β) {
+			return bestScore;
 		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
+
+		AtomicInteger bound = new AtomicInteger(Math.max(α, bestScore));
+		List<RootTask> tasks = new ArrayList<>();
+		for(int i = 1; i < n; i++) {
+			tasks.add(new RootTask(rootSearchers[order[i]], new Connect4Board(board), order[i], depth, bound, β, arb));
 		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
 			}
-		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
+		});
+
+		// Go through the results in search order so ties go to the column
+		// that was ordered first.  A task that failed low only knows an
+		// upper bound on its score, so it can't be the best move.
+		for (RootTask t : tasks) {
+			if (t.timeUp) {
+				throw new TimeUpException();
+			}
+			if (t.searched && t.score > t.α && t.score > bestScore) {
+				bestScore = t.score;
+				searcher.rootBestCol = t.col;
 			}
 		}
-		return winner;
+		return bestScore;
 	}
 
-	// Return the number of connect-4s that player #id has.
-	public int calcScore(Connect4Board board, int id)
-	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int score = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				if (board.get(r, c + 0) != id) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				score++;
-			}
+	// Search of one root column on its own board copy.
+	@SuppressWarnings("serial")
+	private static class RootTask extends RecursiveAction {
+		final Searcher searcher;
+		final Connect4Board board;
+		final int col, depth, β;
+		final AtomicInteger bound;
+		final Arbitrator arb;
+		int α, score;
+		boolean searched, timeUp;
+
+		RootTask(Searcher searcher, Connect4Board board, int col, int depth, AtomicInteger bound, int β, Arbitrator arb) {
+			this.searcher = searcher;
+			this.board = board;
+			this.col = col;
+			this.depth = depth;
+			this.bound = bound;
+			this.β = β;
+			this.arb = arb;
 		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c) != id) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				score++;
+
+		@Override
+		protected void compute() {
+			α = bound.get();
+			if (α >= β) {
+				return; // another column already caused a cutoff
 			}
-		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c + 0) != id) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				score++;
+			try {
+				score = searcher.searchChild(board, col, depth, α, β, false, arb);
+				searched = true;
+				bound.accumulateAndGet(score, Math::max);
+			}
+			catch (TimeUpException e) {
+				timeUp = true;
 			}
 		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				if (board.get(r - 0, c + 0) != id) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				score++;
+	}
+
+	public int alphabeta(Connect4Board board, int depth, int α, int β, boolean isMaximizing, Arbitrator arb)
+			throws TimeUpException {
+		return searcher.search(board, depth, 1, α, β, isMaximizing, false, arb);
+	}
+
+	// Total positions visited by this player, over every search thread.
+	long nodes() {
+		SearchStats total = new SearchStats();
+		count(total);
+		return total.nodes;
+	}
+
+	// Add up the running totals of every search thread.
+	void count(SearchStats total) {
+		searcher.count(total);
+		if (solver != null) {
+			total.nodes += solver.nodes();
+		}
+		if (rootSearchers != null) {
+			for (Searcher s : rootSearchers) s.count(total);
+		}
+	}
+
+	@Override
+	public SearchStats lastSearch() {
+		// Depth, time and iteration times were kept as the search went;
+		// the counts come from the searchers.
+		SearchStats last = new SearchStats(stats);
+		SearchStats now = new SearchStats();
+		count(now);
+		last.nodes = now.nodes - before.nodes;
+		last.cutoffs = now.cutoffs - before.cutoffs;
+		last.ttProbes = now.ttProbes - before.ttProbes;
+		last.ttHits = now.ttHits - before.ttHits;
+		return last;
+	}
+
+	// Move col to the front of order, keeping the others in the same order.
+	private static void moveToFront(int[] order, int n, int col) {
+		for(int i = 0; i < n; i++) {
+			if (order[i] == col) {
+				System.arraycopy(order, 0, order, 1, i);
+				order[0] = col;
+				return;
 			}
 		}
-		//System.out.println("id = " + id + ", score = " + score);
-		return score;
+	}
+
+	// Return the id (>0) of the winner for normal connect-4 play.
+	// Return 0 if there is no winner.
+	// Return -1 if there is more than 1 winner.
+	public int calcWinner(Connect4Board board)
+	{
+		return board.winner();
+	}
+
+	// Return the number of connect-4s that player #id has.
+	public int calcScore(Connect4Board board, int id)
+	{
+		return board.score(id);
 	}
 
 }
@@ -1,50 +1,107 @@
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * A class providing the communication mechanism between the player and
- * the game.  All methods are synchronized because the player and the
- * game run in different threads.  All cross-thread communication is
- * managed by this class.
+ * the game.  The player and the game run in different threads, and all
+ * cross-thread communication is managed by this class.
+ *
+ * Nothing here takes a lock: the move and the time-up flag live together
+ * in one atomic word, so checking the time is a single volatile read,
+ * while setMove() and timeUp() still happen in one order or the other,
+ * exactly as if they were synchronized.
  * 
  * @author Daniel Szafir
  *
  */
 public class Arbitrator 
 {
-    private int moveCol = -1;
-    private boolean timeUp = false;
+    // The move in the high bits, and bit 0 set once time is up.
+    private static final long TIME_UP = 1;
+    private final AtomicLong state = new AtomicLong((long) -1 << 1);
+
+    // When the game will call timeUp(), in System.nanoTime() terms.
+    private volatile long deadline = Long.MAX_VALUE;
+
+    // The depth of the last finished iteration in the high half and its
+    // score in the low half, so a reader always sees a matching pair.
+    private volatile long progress = NO_PROGRESS;
+    private static final long NO_PROGRESS = 0;
 
     // Set the column of the next move.  Must be called by the
     // player so that the game can access the move.  This
     // may be called many times safely.
-    public final synchronized void setMove(int col) throws TimeUpException { 
-        checkTime();
-        moveCol = col; 
+    public final void setMove(int col) throws TimeUpException { 
+        long s;
+        do {
+            s = state.get();
+            if ((s & TIME_UP) != 0) {
+                throw new TimeUpException();
+            }
+        }
+        while (!state.compareAndSet(s, (long) col << 1));
     }
 
     // Must be called by frequently by the player to protect against
     // run-away calculations.
-    public final synchronized void checkTime() throws TimeUpException {
-        if (timeUp) {
+    public final void checkTime() throws TimeUpException {
+        if ((state.get() & TIME_UP) != 0) {
             throw new TimeUpException();
         }
     }
 
     // So the player can check if time is up without having an
     // exception thrown.
-    public final synchronized boolean isTimeUp() {
-        return timeUp;
+    public final boolean isTimeUp() {
+        return (state.get() & TIME_UP) != 0;
     }
 
     // Called by the game when the player has run out of time to
     // calculate its next move.  The effect of this method being
     // called is that checkTime() and setMove() will throw a
     // TimeUpException when called.
-    public final synchronized void timeUp() {
-        timeUp = true;
+    public final void timeUp() {
+        state.getAndUpdate(s -> s | TIME_UP);
+    }
+
+    // Optionally called by the player along with setMove(), to say how
+    // deep it has searched and what the move is worth.  The game only
+    // shows these while the player is thinking; they don't affect play.
+    public final void setProgress(int depth, int score) {
+        progress = ((long) depth << 32) | (score & 0xffffffffL);
+    }
+
+    // The depth and score passed to the last setProgress(), in that
+    // order, or null if it hasn't been called.
+    public final int[] getProgress() {
+        long p = progress;
+        if (p == NO_PROGRESS) return null;
+        return new int[] { (int) (p >> 32), (int) p };
     }
 
     // Get the column of the next move.  The game calls this
     // method to access the player's next move.
-    public final synchronized int getMove() { 
-        return moveCol; 
+    public final int getMove() { 
+        return (int) (state.get() >> 1); 
+    }
+
+    // Called by the game before the player starts thinking, with the
+    // System.nanoTime() at which it will call timeUp().
+    final void setDeadline(long nanoTime) {
+        deadline = nanoTime;
+    }
+
+    // When the game will call timeUp(), in System.nanoTime() terms, or
+    // Long.MAX_VALUE if there is no limit.  Players can plan their
+    // time with it; timeUp() may still come a little later.
+    public final long deadline() {
+        return deadline;
+    }
+
+    // Nanoseconds left before the deadline, never less than 0.  Cheap
+    // enough to poll, but it does read the clock.
+    public final long remainingNanos() {
+        long d = deadline;
+        if (d == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, d - System.nanoTime());
     }
-}
\ No newline at end of file
+}
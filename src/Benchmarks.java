@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Repeatable performance numbers for the board and the search players.
+ *
+ * Each benchmark is run for a number of timed warmup iterations, so the
+ * JIT has settled, and then for a number of measured iterations.  The
+ * score is units of work per second (moves, calls, nodes, ...), reported
+ * as the mean over the measured iterations with a 99% confidence
+ * interval, like JMH's throughput mode.
+ *
+ * Every benchmark works through the same fixed set of 6x7 positions, from
+ * the empty board to the endgame, so numbers from different runs and
+ * different versions of the code can be compared.
+ *
+ */
+public class Benchmarks
+{
+    // The positions, as the columns played in order, player #1 first.
+    static final String[] POSITIONS = {
+        "",
+        "3",
+        "3323",
+        "33224411",
+        "3332244155",
+        "332244115566003",
+        "0123456012345",
+        "33333322222244444411",
+        "01234560123456012345601234",
+        "33333322222244444411111155",
+    };
+
+    // Results go here so the JIT can't throw the work away.
+    static long sink;
+
+    private static final Arbitrator NO_LIMIT = new Arbitrator();
+
+    // One benchmark: op() does one operation and says how much work it was.
+    private static abstract class Bench
+    {
+        final String name, unit;
+
+        Bench (String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        abstract long op() throws TimeUpException;
+    }
+
+    // Print program usage and exit.
+    private static void usage() {
+        System.err.println();
+        System.err.println("usage: Benchmarks [options]");
+        System.err.println();
+        System.err.println("    b - Only run benchmarks whose name contains this.");
+        System.err.println("    w - Warmup iterations (default 5).");
+        System.err.println("    i - Measured iterations (default 10).");
+        System.err.println("   ms - Length of each iteration in msec (default 1000).");
+        System.err.println("   md - Minimax search depth (default 5).");
+        System.err.println("   ad - AlphaBeta search depth (default 9).");
+        System.err.println();
+        System.exit(1);
+    }
+
+    public static void main (String[] args) throws Exception {
+        String filter = "";
+        int warmup = 5;
+        int iterations = 10;
+        int msec = 1000;
+        int minimaxDepth = 5;
+        int alphaBetaDepth = 9;
+        for (int i=0; i<args.length; i++) {
+            if (i+1 == args.length) usage();
+            String value = args[++i];
+            switch (args[i-1]) {
+                case "-b": filter = value; break;
+                case "-w": warmup = Integer.parseInt(value); if (warmup < 0) usage(); break;
+                case "-i": iterations = Integer.parseInt(value); if (iterations < 2) usage(); break;
+                case "-ms": msec = Integer.parseInt(value); if (msec < 1) usage(); break;
+                case "-md": minimaxDepth = Integer.parseInt(value); if (minimaxDepth < 1) usage(); break;
+                case "-ad": alphaBetaDepth = Integer.parseInt(value); if (alphaBetaDepth < 1) usage(); break;
+                default: usage();
+            }
+        }
+
+        System.out.println(String.format("%-28s %4s %14s %12s  %s",
+                "Benchmark", "Cnt", "Score", "Error", "Units"));
+        for (Bench b : benchmarks(minimaxDepth, alphaBetaDepth)) {
+            if (!b.name.contains(filter)) continue;
+            for (int i = 0; i < warmup; i++) {
+                iteration(b, msec);
+            }
+            double[] scores = new double [iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = iteration(b, msec);
+            }
+            double mean = 0;
+            for (double s : scores) mean += s;
+            mean /= iterations;
+            double var = 0;
+            for (double s : scores) var += (s - mean) * (s - mean);
+            double sd = Math.sqrt(var / (iterations - 1));
+            System.out.println(String.format("%-28s %4d %14.0f %12.0f  %s/s",
+                    b.name, iterations, mean, 2.576 * sd / Math.sqrt(iterations), b.unit));
+        }
+        System.err.println("(sink " + sink + ")");
+    }
+
+    // Run b for about msec milliseconds and return its units per second.
+    private static double iteration (Bench b, int msec) throws TimeUpException {
+        long units = 0;
+        long start = System.nanoTime();
+        long end = start + msec * 1_000_000L;
+        long now;
+        do {
+            units += b.op();
+            now = System.nanoTime();
+        }
+        while (now < end);
+        return units * 1e9 / (now - start);
+    }
+
+    // Set up a position from POSITIONS.
+    static Connect4Board position (String moves, boolean useBitboard) {
+        Connect4Board board = new Connect4Board(6, 7, useBitboard);
+        for (int i = 0; i < moves.length(); i++) {
+            board.move(moves.charAt(i) - '0', 1 + (i % 2));
+        }
+        return board;
+    }
+
+    // The player to move in a position from POSITIONS.
+    static int toMove (String moves) {
+        return 1 + (moves.length() % 2);
+    }
+
+    private static List<Bench> benchmarks (int minimaxDepth, int alphaBetaDepth) {
+        List<Bench> list = new ArrayList<>();
+        for (boolean bits : new boolean[] { true, false }) {
+            String kind = bits ? "bitboard" : "cells";
+            Connect4Board[] boards = new Connect4Board [POSITIONS.length];
+            int[] ids = new int [POSITIONS.length];
+            for (int i = 0; i < boards.length; i++) {
+                boards[i] = position(POSITIONS[i], bits);
+                ids[i] = toMove(POSITIONS[i]);
+            }
+
+            list.add(new Bench("board.moveUnmove." + kind, "moves") {
+                long op() {
+                    long n = 0;
+                    for (int i = 0; i < boards.length; i++) {
+                        Connect4Board b = boards[i];
+                        for (int col = 0; col < 7; col++) {
+                            if (!b.isValidMove(col)) continue;
+                            b.move(col, ids[i]);
+                            sink += b.key();
+                            b.unmove(col, ids[i]);
+                            n++;
+                        }
+                    }
+                    return n;
+                }
+            });
+            list.add(new Bench("board.get." + kind, "cells") {
+                long op() {
+                    for (Connect4Board b : boards) {
+                        for (int r = 0; r < 6; r++) {
+                            for (int c = 0; c < 7; c++) {
+                                sink += b.get(r, c);
+                            }
+                        }
+                    }
+                    return boards.length * 42;
+                }
+            });
+            list.add(new Bench("board.winner." + kind, "calls") {
+                long op() {
+                    for (Connect4Board b : boards) {
+                        sink += b.winner();
+                    }
+                    return boards.length;
+                }
+            });
+            list.add(new Bench("board.score." + kind, "calls") {
+                long op() {
+                    for (Connect4Board b : boards) {
+                        sink += b.score(1) - b.score(2);
+                    }
+                    return 2 * boards.length;
+                }
+            });
+        }
+
+        // Searches only use positions with enough empty cells for the depth.
+        Minimax minimax = new Minimax();
+        minimax.init(1, 1000, 6, 7);
+        list.add(new Bench("minimax.depth" + minimaxDepth, "nodes") {
+            long op() {
+                long before = minimax.stats.nodes;
+                for (String p : POSITIONS) {
+                    Connect4Board b = position(p, true);
+                    if (b.numEmptyCells() < minimaxDepth) continue;
+                    sink += minimax.minimax(b, minimaxDepth, toMove(p) == 1, NO_LIMIT);
+                }
+                return minimax.stats.nodes - before;
+            }
+        });
+        for (boolean ordering : new boolean[] { true, false }) {
+            TranspositionTable tt = ordering
+                ? new TranspositionTable(4, TranspositionTable.REPLACE_DEPTH) : null;
+            String name = "alphabeta.depth" + alphaBetaDepth + (ordering ? ".tt" : ".plain");
+            list.add(new Bench(name, "nodes") {
+                long op() throws TimeUpException {
+                    long n = 0;
+                    for (String p : POSITIONS) {
+                        Connect4Board b = position(p, true);
+                        if (b.numEmptyCells() < alphaBetaDepth) continue;
+                        if (tt != null) tt.clear();
+                        Searcher s = new Searcher(toMove(p), 6, 7, tt, ordering);
+                        int count = s.orderer.order(b, 0, toMove(p), -1, -1);
+                        int[] order = Arrays.copyOf(s.orderer.moves(0), count);
+                        sink += s.searchRoot(b, order, count, alphaBetaDepth,
+                                -Searcher.INFINITY, Searcher.INFINITY, NO_LIMIT);
+                        n += s.nodes;
+                    }
+                    return n;
+                }
+            });
+        }
+        list.add(new Bench("solver.endgame", "nodes") {
+            long op() throws TimeUpException {
+                // A new solver each time, so nothing is left in its table.
+                EndgameSolver solver = new EndgameSolver("most", 4);
+                for (String p : POSITIONS) {
+                    Connect4Board b = position(p, true);
+                    if (b.numEmptyCells() > 16) continue;
+                    sink += solver.solve(b, toMove(p), NO_LIMIT);
+                }
+                return solver.nodes();
+            }
+        });
+        return list;
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds an opening book offline.  Every position reachable from the empty
+ * board in at most a given number of moves, with either player moving
+ * first, is searched to a fixed depth (or solved exactly, if it is close
+ * enough to the end of the game) and the best move is written out with
+ * OpeningBook.write().  Mirror images are only searched once.
+ *
+ */
+public class BookGenerator
+{
+    private final int rows, cols, maxPly, depth;
+    private final EndgameSolver solver;
+    private final int solverEmptyCells;
+    private final Arbitrator arb = new Arbitrator();
+    private final Set<Long> seen = new HashSet<>();
+    private long[] keys = new long [1024];
+    private int[] moves = new int [1024];
+    private int[] scores = new int [1024];
+    private int n;
+
+    private BookGenerator (int rows, int cols, int maxPly, int depth, String game) {
+        this.rows = rows;
+        this.cols = cols;
+        this.maxPly = maxPly;
+        this.depth = depth;
+        this.solver = new EndgameSolver(game, 64);
+        this.solverEmptyCells = Integer.getInteger("connect4.solver.empty", 16);
+    }
+
+    // Print program usage and exit.
+    private static void usage() {
+        System.err.println();
+        System.err.println("usage: BookGenerator [options]");
+        System.err.println();
+        System.err.println("    r - Number of rows, >= 4.");
+        System.err.println("    c - Number of columns, >= 4.");
+        System.err.println("  ply - Store positions up to this many moves in, >= 0.");
+        System.err.println("    d - Search depth for each position, >= 1.");
+        System.err.println(" game - Which game the book is for: first or most.");
+        System.err.println("    o - Output file.");
+        System.err.println();
+        System.exit(1);
+    }
+
+    public static void main (String[] args) throws Exception {
+        int rows = 6;
+        int cols = 7;
+        int ply = 4;
+        int depth = 12;
+        String game = "most";
+        String out = "connect4.book";
+        for (int i=0; i<args.length; i++) {
+            if (i+1 == args.length) usage();
+            String value = args[++i];
+            switch (args[i-1]) {
+                case "-r": rows = Integer.parseInt(value); if (rows < 4) usage(); break;
+                case "-c": cols = Integer.parseInt(value); if (cols < 4) usage(); break;
+                case "-ply": ply = Integer.parseInt(value); if (ply < 0) usage(); break;
+                case "-d": depth = Integer.parseInt(value); if (depth < 1) usage(); break;
+                case "-game": game = value; if (!game.equals("first") && !game.equals("most")) usage(); break;
+                case "-o": out = value; break;
+                default: usage();
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        BookGenerator gen = new BookGenerator(rows, cols, ply, depth, game);
+        gen.walk(new Connect4Board(rows, cols), 1, 0);
+        gen.walk(new Connect4Board(rows, cols), 2, 0);
+        OpeningBook.write(out, rows, cols, game, gen.keys, gen.moves, gen.scores, gen.n);
+        System.err.println("Wrote " + gen.n + " positions to " + out + " in "
+                           + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    // Add this position and everything reachable from it within maxPly.
+    private void walk (Connect4Board board, int id, int ply) throws TimeUpException {
+        if (ply > maxPly || board.isFull() || board.winner() != 0) return;
+        if (!seen.add(OpeningBook.positionKey(board, id))) return;
+        add(board, id);
+        for (int col = 0; col < cols; col++) {
+            if (!board.isValidMove(col)) continue;
+            board.move(col, id);
+            walk(board, 3 - id, ply + 1);
+            board.unmove(col, id);
+        }
+    }
+
+    // Search a position and record its best move.
+    private void add (Connect4Board board, int id) throws TimeUpException {
+        int col, score;
+        if (board.numEmptyCells() <= solverEmptyCells) {
+            score = solver.solve(board, id, arb);
+            col = solver.bestMove(board, id, score, arb);
+        }
+        else {
+            Searcher s = new Searcher(id, rows, cols, null, true);
+            int count = s.orderer.order(board, 0, id, -1, -1);
+            int[] order = Arrays.copyOf(s.orderer.moves(0), count);
+            score = 0;
+            for (int d = 1; d <= Math.min(depth, board.numEmptyCells()); d++) {
+                score = s.searchRoot(board, order, count, d, -Searcher.INFINITY, Searcher.INFINITY, arb);
+                int best = s.rootBestCol;
+                int i = 0;
+                while (order[i] != best) i++;
+                System.arraycopy(order, 0, order, 1, i);
+                order[0] = best;
+            }
+            col = order[0];
+        }
+        if (n == keys.length) {
+            keys = Arrays.copyOf(keys, 2*n);
+            moves = Arrays.copyOf(moves, 2*n);
+            scores = Arrays.copyOf(scores, 2*n);
+        }
+        keys[n] = OpeningBook.positionKey(board, id);
+        moves[n] = board.canonicalCol(col);
+        scores[n] = score;
+        n++;
+    }
+}
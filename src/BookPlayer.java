@@ -0,0 +1,101 @@
+import java.io.IOException;
+
+/**
+ * A Connect-4 player that plays from an opening book while it can and
+ * leaves the rest of the game to another player.
+ *
+ * Properties:
+ *   connect4.book         the book file written by BookGenerator
+ *                         (default connect4.book); if it can't be read
+ *                         every move goes to the other player, as it
+ *                         does if the book was built for another game
+ *   connect4.book.player  class name of the player to fall back on
+ *                         (default AlphaBeta)
+ *
+ */
+public class BookPlayer implements Player, GameAware, Instrumented {
+
+	// The book is opened once and shared, since it is read-only.
+	private static String bookPath;
+	private static OpeningBook sharedBook;
+
+	OpeningBook book;
+	Player delegate;
+	int id;
+	String game;
+
+	// What the last move took if it came from the book: no search at all.
+	private final SearchStats bookStats = new SearchStats();
+	private boolean fromBook;
+
+
+	@Override
+	public String name() {
+		return (delegate == null) ? "Book" : "Book " + delegate.name();
+	}
+
+	// Passed on to the other player, which may need it.
+	@Override
+	public void setGame(String game) {
+		this.game = game;
+	}
+
+	@Override
+	public void init(int id, int msecPerMove, int rows, int cols) {
+		this.id = id;
+		this.book = book(System.getProperty("connect4.book", "connect4.book"));
+		if (book != null && !book.game().equals(game)) {
+			// A book for the other game would play the wrong moves.
+			EventLog.warn("book.off", "player", id, "book", book.game(), "game", game,
+					"msg", "The book is for another game, or the game is unknown; not using it.");
+			book = null;
+		}
+		String className = System.getProperty("connect4.book.player", "AlphaBeta");
+		try {
+			delegate = PlayerRunner.newPlayer(className);
+		}
+		catch (Exception e) {
+			throw new IllegalArgumentException("connect4.book.player=" + className, e);
+		}
+		PlayerRunner.init(delegate, game, id, msecPerMove, rows, cols);
+	}
+
+	private static synchronized OpeningBook book(String path) {
+		if (!path.equals(bookPath)) {
+			bookPath = path;
+			try {
+				sharedBook = new OpeningBook(path);
+			}
+			catch (IOException e) {
+				sharedBook = null;
+			}
+		}
+		return sharedBook;
+	}
+
+	@Override
+	public void calcMove(
+			Connect4Board board, int oppMoveCol, Arbitrator arb)
+					throws TimeUpException {
+		if (book != null) {
+			bookStats.start();
+			int col = book.probe(board, id);
+			bookStats.stop();
+			if (col >= 0 && board.isValidMove(col)) {
+				fromBook = true;
+				arb.setMove(col);
+				return;
+			}
+		}
+		fromBook = false;
+		delegate.calcMove(board, oppMoveCol, arb);
+	}
+
+	@Override
+	public SearchStats lastSearch() {
+		if (!fromBook && delegate instanceof Instrumented) {
+			return ((Instrumented) delegate).lastSearch();
+		}
+		return bookStats;
+	}
+}
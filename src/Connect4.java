@@ -2,7 +2,7 @@
  *              ALL STUDENTS COMPLETE THESE SECTIONS
  * Title:            Connect4
  * Files:            Connect4.java, Connect4Game.java, Connect4Board.java,
- * 					 Arbitrator.java, TimeUpException.java, PlayerThread.java, Player.java
+ * 					 Arbitrator.java, TimeUpException.java, PlayerTask.java, Player.java
  * 					 HumanPlayer.java, RandomOlayer.java, [OtherPlayers].java
  * Semester:         Spring 2021
  * 
@@ -22,8 +22,10 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.text.NumberFormat;
 import java.text.ParsePosition;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
@@ -40,6 +42,7 @@ import javafx.scene.control.Spinner;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.image.Image;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
@@ -103,6 +106,22 @@ public class Connect4 extends Application
 	private int mouseHoveringCol;
 	private boolean isMouseHovering;
 
+	// What each cell of the canvas shows now, by row and column, so that
+	// drawBoard() only repaints the cells that changed.  A cell is 0, 1
+	// or 2 like the board, or HOVER for an empty cell under the mouse.
+	private int[][] drawnCells;
+	private static final int HOVER = 3;
+
+	// The background and grid lines, drawn once for each size of board.
+	private Image gridImage;
+
+	// Set while a drawing is waiting to be done.
+	private boolean redrawPending;
+
+	// Shows a computer player's progress in the status line, once a frame,
+	// while it thinks on the search thread.
+	private AnimationTimer thinkingTimer;
+
 	// Print program usage and exit.
 	private static void usage() {
 		System.err.println();
@@ -521,15 +540,17 @@ public class Connect4 extends Application
 			c4Game.moveHuman(col);
 		});
 		canvas.setOnMouseMoved(e -> {
-			isMouseHovering = true;
 			double width = canvas.getWidth();
 			double columnWidth = width / board.numCols();
-			mouseHoveringCol = (int) e.getX() / (int) columnWidth; // integer division tells us the column
-			drawBoard();
+			int col = (int) e.getX() / (int) columnWidth; // integer division tells us the column
+			if (isMouseHovering && col == mouseHoveringCol) return;
+			isMouseHovering = true;
+			mouseHoveringCol = col;
+			redraw();
 		});
 		canvas.setOnMouseExited(e -> {
 			isMouseHovering = false;
-			drawBoard();
+			redraw();
 		});
 		
 		//BorderPane.setMargin(canvas, borderMargin);
@@ -583,6 +604,40 @@ public class Connect4 extends Application
 		statusLabel.setText((c4Game.isPaused() ? "[paused] " : "") + status);
 	}
 
+	// Show who is thinking, for how long, and how far the search has got,
+	// until stopThinking().  The player reports through arb, which is
+	// safe to read from this thread.
+	public void startThinking(String who, Arbitrator arb) {
+		stopThinking();
+		long start = System.nanoTime();
+		thinkingTimer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				String msg = who + " is thinking (" + Math.max(0, now - start) / 1000000 + " ms)";
+				int[] progress = arb.getProgress();
+				if (progress != null) {
+					msg += ": depth " + progress[0] + ", score " + progress[1]
+							+ ", best column #" + arb.getMove();
+				}
+				updateStatus(msg);
+			}
+		};
+		thinkingTimer.start();
+	}
+
+	public void stopThinking() {
+		if (thinkingTimer != null) {
+			thinkingTimer.stop();
+			thinkingTimer = null;
+		}
+	}
+
+	// Run r on the JavaFX application thread.  The game uses this to make
+	// a move once the search thread has it.
+	public void runLater(Runnable r) {
+		Platform.runLater(r);
+	}
+
 	public void updateGame(int gameNum, int numGames, int numSeedMoves, boolean matchPlay) {
 				gameLabel.setText(""+gameNum);
 		//		numGamesSpinner.getValueFactory().setValue(numGames);
@@ -592,9 +647,22 @@ public class Connect4 extends Application
 
 	public void updateBoard(Connect4Board board) {
 		this.board = board;
-		drawBoard();
+		redraw();
 	}
 
+	// Ask for the board to be drawn.  However many times this is called
+	// before the application thread gets to it, it is drawn only once.
+	private void redraw() {
+		if (redrawPending) return;
+		redrawPending = true;
+		Platform.runLater(() -> {
+			redrawPending = false;
+			drawBoard();
+		});
+	}
+
+	// Bring the canvas up to date with the board, repainting only the
+	// cells that look different from the last time.
 	private void drawBoard()
 	{
 		GraphicsContext gc = canvas.getGraphicsContext2D();
@@ -602,41 +670,39 @@ public class Connect4 extends Application
 		double width = canvas.getWidth();
 		double height = canvas.getHeight();
 
-		// Clear the drawing
-		gc.setFill(Color.GREY);
-		gc.fillRect(0, 0, width, height);
-
-		int numCells = board.numCells();
 		int rows = board.numRows();
 		double rowHeight = height / rows;
 
 		int cols = board.numCols();
 		double colWidth = width / cols;
 
-		gc.setStroke(Color.BLACK);
-		for (int x = 0; x < cols; x++) {
-			gc.strokeLine(x * colWidth, 0, x*colWidth, height);
-		}
-
-		for (int y = 0; y < rows; y++) {
-			gc.strokeLine(0, y*rowHeight, width, y*rowHeight);
+		// A new size of board needs a new grid, and every cell drawn.
+		if (drawnCells == null || drawnCells.length != rows || drawnCells[0].length != cols) {
+			gridImage = drawGrid(width, height, rows, cols);
+			gc.drawImage(gridImage, 0, 0);
+			drawnCells = new int[rows][cols];
+			for (int[] row : drawnCells) {
+				Arrays.fill(row, -1);
+			}
 		}
 
-		gc.setFill(Color.BLACK);
 		double cellDiameter = Math.min(rowHeight, colWidth);
 		cellDiameter *= .75; //give some padding
-		// draw from bottom up, left to right
-		gc.save();
-		gc.translate(0, height);
-		gc.scale(1, -1);
+		// rows are numbered from the bottom up
 		for (int x = 0; x < cols; x++) {
 			for (int y = 0; y < rows; y++) {
+				int cell = board.get(y, x);
+				if (cell == 0 && isMouseHovering && x == mouseHoveringCol) {
+					cell = HOVER;
+				}
+				if (cell == drawnCells[y][x]) continue;
+				drawnCells[y][x] = cell;
 
-				switch(board.get(y, x))
+				switch(cell)
 				{
-				case 0: 
-					if (isMouseHovering && x == mouseHoveringCol) gc.setFill(Color.DARKGREY);
-					else gc.setFill(Color.BLACK);
+				case 0: gc.setFill(Color.BLACK);
+				break;
+				case HOVER: gc.setFill(Color.DARKGREY);
 				break;
 				case 1: gc.setFill(Color.RED);
 				break;
@@ -644,12 +710,40 @@ public class Connect4 extends Application
 				}
 
 				double centerX = x*colWidth + colWidth/2;
-				double centerY = y*rowHeight + rowHeight/2;
-
-				gc.fillOval(centerX - cellDiameter/2, centerY - cellDiameter/2, cellDiameter, cellDiameter);
+				double centerY = height - (y*rowHeight + rowHeight/2);
+				double left = centerX - cellDiameter/2;
+				double top = centerY - cellDiameter/2;
+
+				// Put back the grid under the old oval (it never reaches
+				// the grid lines), then draw the new one.
+				gc.drawImage(gridImage, left - 1, top - 1, cellDiameter + 2, cellDiameter + 2,
+						left - 1, top - 1, cellDiameter + 2, cellDiameter + 2);
+				gc.fillOval(left, top, cellDiameter, cellDiameter);
 			}
 		}
-		gc.restore();
+	}
+
+	// Draw the background and grid lines of an empty board.
+	private static Image drawGrid(double width, double height, int rows, int cols)
+	{
+		Canvas grid = new Canvas(width, height);
+		GraphicsContext gc = grid.getGraphicsContext2D();
+
+		gc.setFill(Color.GREY);
+		gc.fillRect(0, 0, width, height);
+
+		double rowHeight = height / rows;
+		double colWidth = width / cols;
+
+		gc.setStroke(Color.BLACK);
+		for (int x = 0; x < cols; x++) {
+			gc.strokeLine(x * colWidth, 0, x*colWidth, height);
+		}
+
+		for (int y = 0; y < rows; y++) {
+			gc.strokeLine(0, y*rowHeight, width, y*rowHeight);
+		}
+		return grid.snapshot(null, null);
 	}
 
 	public void showMessageDialog(String msg) {
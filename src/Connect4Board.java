@@ -2,6 +2,14 @@
 /**
  * A class to represent a connect 4 board.
  * 
+ * Boards that fit in 64 bits are stored as bitboards: one long per
+ * player, with each column taking (rows+1) bits so that the spare top
+ * bit keeps lines from wrapping into the next column.  The per-column
+ * heights double as the height mask.  Connect-4s are found a whole
+ * direction at a time by shifting and masking the player's bits.  Larger
+ * boards fall back to a plain int[] of cells.  The public API is the same
+ * either way.
+ * 
  * @author Daniel Szafir
  *
  */
@@ -12,6 +20,30 @@ public class Connect4Board
     private int totalCount;
     private int[] colCounts;
 
+    // Columns of every move made so far, in order, so that the last move
+    // can be recovered after an unmove().
+    private int[] history;
+
+    // Number of connect-4s each player has, kept up to date by move(),
+    // unmove() and reverse().
+    private int score1, score2;
+
+    // Bitboard state, only used when bitboard is true.
+    private final boolean bitboard;
+    private final int height;
+    private long bits1, bits2;
+
+    // Zobrist hashing.  The table holds one random 64-bit value per
+    // (cell, player) and is shared between copies of a board.  The key
+    // is the xor of the values of every occupied cell; the mirrored key
+    // is the key the board would have if flipped left to right.
+    private static final long ZOBRIST_SEED = 0x43344B6579L;
+    private final long[] zobrist;
+    private long key, mirroredKey;
+
+    // Mixed into a key when it is player 2's turn.
+    private static final long PLAYER2_TO_MOVE = 0x9E3779B97F4A7C15L;
+
     /**
      * Creates a new connect 4 board of the default size (6 rows and 7 columns)
      */
@@ -25,11 +57,33 @@ public class Connect4Board
      * @param cols Number of columns
      */
     public Connect4Board (int rows, int cols) {
+        this(rows, cols, fitsBitboard(rows, cols));
+    }
+
+    /**
+     * Construct a new board with a custom size, choosing the representation
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @param useBitboard True to store the board as bitboards, false to use an int[]
+     */
+    public Connect4Board (int rows, int cols, boolean useBitboard) {
+        this(rows, cols, useBitboard, zobristTable(rows, cols));
+    }
+
+    private Connect4Board (int rows, int cols, boolean useBitboard, long[] zobrist) {
+        if (useBitboard && !fitsBitboard(rows, cols)) {
+            throw new IllegalArgumentException(
+                "board too large for a bitboard: rows=" + rows + " cols=" + cols);
+        }
         this.rows = rows;
         this.cols = cols;
-        this.cells = new int [rows*cols];
+        this.bitboard = useBitboard;
+        this.height = rows + 1;
+        this.cells = useBitboard ? null : new int [rows*cols];
         this.totalCount = 0;
         this.colCounts = new int [cols];
+        this.history = new int [rows*cols];
+        this.zobrist = zobrist;
     }
 
     /**
@@ -37,10 +91,137 @@ public class Connect4Board
      * @param that The board to copy
      */
     public Connect4Board (Connect4Board that) {
-        this(that.numRows(),that.numCols());
-        System.arraycopy(that.cells,0,this.cells,0,rows*cols);
+        this(that.numRows(),that.numCols(),that.bitboard,that.zobrist);
+        if (bitboard) {
+            this.bits1 = that.bits1;
+            this.bits2 = that.bits2;
+        }
+        else {
+            System.arraycopy(that.cells,0,this.cells,0,rows*cols);
+        }
         System.arraycopy(that.colCounts,0,this.colCounts,0,cols);
+        System.arraycopy(that.history,0,this.history,0,that.totalCount);
         this.totalCount = that.totalCount;
+        this.score1 = that.score1;
+        this.score2 = that.score2;
+        this.key = that.key;
+        this.mirroredKey = that.mirroredKey;
+    }
+
+    // Build the Zobrist table for a board size.  The values come from a
+    // fixed seed so that boards of the same size always agree on keys.
+    private static long[] zobristTable (int rows, int cols) {
+        long[] table = new long [rows*cols*2];
+        long seed = ZOBRIST_SEED;
+        for (int i = 0; i < table.length; i++) {
+            // splitmix64
+            long z = (seed += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+
+    private long zobrist (int row, int col, int id) {
+        return zobrist[(row*cols+col)*2 + id-1];
+    }
+
+    /**
+     * Get the Zobrist key of the position.  Two boards of the same size
+     * with the same pieces have the same key.  Whose turn it is is not
+     * part of the key.
+     * @return A 64-bit hash of the position
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Get the Zobrist key of this position flipped left to right, i.e.,
+     * the key() of the board with column c moved to column numCols()-1-c.
+     * @return A 64-bit hash of the mirrored position
+     */
+    public long mirroredKey() {
+        return mirroredKey;
+    }
+
+    /**
+     * Get the key shared by this position and its mirror image, the
+     * smaller of key() and mirroredKey().  Caches keyed by it store each
+     * pair of mirrored positions once.  A column stored with the key must
+     * go through canonicalCol() on the way in and on the way out.
+     * @return A 64-bit hash of the position, the same for both mirror images
+     */
+    public long canonicalKey() {
+        return Math.min(key, mirroredKey);
+    }
+
+    /**
+     * Get canonicalKey() with whose turn it is mixed in, for caches where
+     * the same pieces with the other player to move are a different
+     * position.
+     * @param toMove The player to move (1 or 2)
+     * @return canonicalKey(), changed in a fixed way when toMove is 2
+     */
+    public long canonicalKey (int toMove) {
+        return canonicalKey() ^ (toMove == 2 ? PLAYER2_TO_MOVE : 0);
+    }
+
+    /**
+     * Check if canonicalKey() is the key of the mirrored position
+     * @return True if columns must be mirrored to match canonicalKey()
+     */
+    public boolean isCanonicalMirrored() {
+        return mirroredKey < key;
+    }
+
+    /**
+     * Translate a column between this board and the canonical position.
+     * The translation is its own inverse, so it works both ways.
+     * @param col A column, or -1
+     * @return numCols()-1-col if isCanonicalMirrored(), else col; -1 stays -1
+     */
+    public int canonicalCol (int col) {
+        return (col >= 0 && isCanonicalMirrored()) ? cols-1-col : col;
+    }
+
+    /**
+     * Check if a board of the given size can be stored as a bitboard
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @return True if (rows+1)*cols bits fit in a long and the shifts
+     *         used to find fours stay below 64
+     */
+    public static boolean fitsBitboard (int rows, int cols) {
+        // Finding a diagonal four shifts by up to 3*(rows+2) bits, and Java
+        // takes long shift counts modulo 64.
+        return rows > 0 && cols > 0 && (rows + 1) * cols <= 64
+            && 3 * (rows + 2) < 64;
+    }
+
+    /**
+     * Check which representation this board uses
+     * @return True if the board is stored as bitboards
+     */
+    public boolean isBitboard() {
+        return bitboard;
+    }
+
+    /**
+     * Get the raw bitboard for a player.  Bit (col*(numRows()+1) + row) is
+     * set when that player occupies cell (row, col).
+     * @param id The player (1 or 2)
+     * @return The player's pieces as a bitboard
+     */
+    public long bitboard (int id) {
+        if (!bitboard) {
+            throw new IllegalStateException("board is not a bitboard");
+        }
+        if (id < 1 || id > 2) {
+            throw new IllegalArgumentException("id="+id);
+        }
+        return (id == 1) ? bits1 : bits2;
     }
 
     /**
@@ -64,7 +245,7 @@ public class Connect4Board
      * @return The number of cells
      */
     public int numCells() { 
-        return cells.length;
+        return rows*cols;
     }
 
     /**
@@ -136,9 +317,124 @@ public class Connect4Board
             throw new IndexOutOfBoundsException(
                 "row=" + row + " col=" + col);
         }
+        return at(row, col);
+    }
+
+    // Same as get(), minus the bounds check.  Callers must make sure
+    // (row, col) is on the board.  A cell is in at most one of the
+    // bitboards, so the two bits make up the player id with no branches.
+    private int at (int row, int col) {
+        if (bitboard) {
+            int i = col*height + row;
+            return (int) (bits1 >>> i) & 1 | ((int) (bits2 >>> i) & 1) << 1;
+        }
         return cells[row*cols+col];
     }
 
+    // Count the connect-4s in bitboard p that include the cell at bit i:
+    // in each direction, the windows of four set bits that start at i or
+    // 1, 2 or 3 steps back from it.  Directions are up a column, along a
+    // row, and along the two diagonals.
+    private int foursThrough (long p, int i) {
+        long bit = 1L << i;
+        return fours(p, bit, 1) + fours(p, bit, height)
+            + fours(p, bit, height+1) + fours(p, bit, height-1);
+    }
+
+    private static int fours (long p, long bit, int step) {
+        long two = p & (p >>> step);
+        long four = two & (two >>> 2*step);
+        four &= bit | (bit >>> step) | (bit >>> 2*step) | (bit >>> 3*step);
+        return (four == 0) ? 0 : Long.bitCount(four);
+    }
+
+    // Count how many of player id's pieces line up with (row, col) going
+    // in direction (dr, dc), not counting (row, col) itself.  Stops at 3
+    // since that is all a connect-4 needs.
+    private int run (int row, int col, int dr, int dc, int id) {
+        int n = 0;
+        int r = row + dr, c = col + dc;
+        while (n < 3 && r >= 0 && r < rows && c >= 0 && c < cols
+               && at(r,c) == id) {
+            n++;
+            r += dr;
+            c += dc;
+        }
+        return n;
+    }
+
+    // Check if the piece at (row, col) is part of a connect-4.  Only the
+    // four lines through that cell are examined.
+    private boolean connectsFour (int row, int col, int id) {
+        if (bitboard) {
+            return foursThrough((id == 1) ? bits1 : bits2, col*height + row) > 0;
+        }
+        return run(row,col,0,1,id) + run(row,col,0,-1,id) >= 3
+            || run(row,col,-1,0,id) >= 3
+            || run(row,col,1,1,id) + run(row,col,-1,-1,id) >= 3
+            || run(row,col,1,-1,id) + run(row,col,-1,1,id) >= 3;
+    }
+
+    // Count the connect-4s of player id that include the piece at
+    // (row, col).  A line of n pieces through the cell holds n-3 windows
+    // of four, each capped at 3 pieces on either side of the cell.
+    private int linesThrough (int row, int col, int id) {
+        if (bitboard) {
+            return foursThrough((id == 1) ? bits1 : bits2, col*height + row);
+        }
+        return Math.max(0, run(row,col,0,1,id) + run(row,col,0,-1,id) - 2)
+            + Math.max(0, run(row,col,1,0,id) + run(row,col,-1,0,id) - 2)
+            + Math.max(0, run(row,col,1,1,id) + run(row,col,-1,-1,id) - 2)
+            + Math.max(0, run(row,col,1,-1,id) + run(row,col,-1,1,id) - 2);
+    }
+
+    /**
+     * Get the number of connect-4s a player has, as used by the "most
+     * connect-4s" game.  The counts are maintained as moves are made, so
+     * this is a constant time read.
+     * @param id The player (1 or 2)
+     * @return The number of connect-4s player id has on the board
+     */
+    public int score (int id) {
+        if (id < 1 || id > 2) {
+            throw new IllegalArgumentException("id="+id);
+        }
+        return (id == 1) ? score1 : score2;
+    }
+
+    /**
+     * Get the column of the most recent move still on the board
+     * @return The column of the last move, or -1 if the board is empty
+     */
+    public int lastMoveCol() {
+        return (totalCount == 0) ? -1 : history[totalCount-1];
+    }
+
+    /**
+     * Check if the most recent move completed a connect-4.  This only looks
+     * at the four lines through the last piece dropped, so it runs in
+     * constant time.
+     * @return True if the last move made a connect-4
+     */
+    public boolean lastMoveWins() {
+        if (totalCount == 0) return false;
+        int col = history[totalCount-1];
+        int row = colCounts[col]-1;
+        return connectsFour(row, col, at(row,col));
+    }
+
+    /**
+     * Get the winner for normal connect-4 play.  Uses the maintained
+     * connect-4 counts, so this is a constant time read.
+     * @return The id (>0) of the player with a connect-4, 0 if there is no
+     *         winner, -1 if both players have a connect-4
+     */
+    public int winner() {
+        if (score1 > 0 && score2 > 0) return -1;
+        if (score1 > 0) return 1;
+        return (score2 > 0) ? 2 : 0;
+    }
+
     // This method is private on purpose.  It is too dangerous to
     // export, since it could be used to put the board into an invalid
     // configuration.  All modifications to the board should be made
@@ -151,6 +447,12 @@ public class Connect4Board
             throw new IndexOutOfBoundsException(
                 "row=" + row + " col=" + col);
         }
+        if (bitboard) {
+            long bit = 1L << (col*height + row);
+            bits1 = (id == 1) ? (bits1 | bit) : (bits1 & ~bit);
+            bits2 = (id == 2) ? (bits2 | bit) : (bits2 & ~bit);
+            return;
+        }
         cells[row*cols+col] = id;
     }
 
@@ -158,10 +460,28 @@ public class Connect4Board
      * Reverse the state of a board, i.e., change all player#1 pieces to player#2, and vice versa.
      */
     public void reverse() {
-        for (int r=0; r<rows; r++) {
-            for (int c=0; c<cols; c++) {
-                int v = get(r,c);
-                if (v!=0) set(r,c,3-v);
+        if (bitboard) {
+            long tmp = bits1;
+            bits1 = bits2;
+            bits2 = tmp;
+        }
+        else {
+            for (int r=0; r<rows; r++) {
+                for (int c=0; c<cols; c++) {
+                    int v = get(r,c);
+                    if (v!=0) set(r,c,3-v);
+                }
+            }
+        }
+        int tmp = score1;
+        score1 = score2;
+        score2 = tmp;
+        key = mirroredKey = 0;
+        for (int c=0; c<cols; c++) {
+            for (int r=0; r<colCounts[c]; r++) {
+                int v = at(r,c);
+                key ^= zobrist(r,c,v);
+                mirroredKey ^= zobrist(r,cols-1-c,v);
             }
         }
     }
@@ -189,8 +509,21 @@ public class Connect4Board
             throw new IllegalArgumentException(
                 "invalid move: col="+col);
         }
-        set(colCounts[col]++,col,id);
-        totalCount++;
+        int row = colCounts[col]++;
+        if (bitboard) {
+            // The cell is on the board and empty, so no need for set().
+            long bit = 1L << (col*height + row);
+            if (id == 1) bits1 |= bit;
+            else bits2 |= bit;
+        }
+        else {
+            set(row,col,id);
+        }
+        history[totalCount++] = col;
+        key ^= zobrist(row,col,id);
+        mirroredKey ^= zobrist(row,cols-1-col,id);
+        if (id == 1) score1 += linesThrough(row,col,id);
+        else score2 += linesThrough(row,col,id);
         return colCounts[col]-1;
     }
     
@@ -204,11 +537,28 @@ public class Connect4Board
         if (id < 1 || id > 2) {
             throw new IllegalArgumentException("id="+id);
         }
-        if (colCounts[col] == 0 || get(colCounts[col]-1,col) != id) { 
+        if (colCounts[col] == 0 || at(colCounts[col]-1,col) != id) {
             throw new IllegalArgumentException(
                 "invalid unmove: col="+col);
         }
-        set(--colCounts[col],col,0);
+        int row = --colCounts[col];
+        if (id == 1) score1 -= linesThrough(row,col,id);
+        else score2 -= linesThrough(row,col,id);
+        if (bitboard) {
+            long bit = 1L << (col*height + row);
+            if (id == 1) bits1 &= ~bit;
+            else bits2 &= ~bit;
+        }
+        else {
+            set(row,col,0);
+        }
+        key ^= zobrist(row,col,id);
+        mirroredKey ^= zobrist(row,cols-1-col,id);
+        // Moves are normally undone in reverse order, but drop the latest
+        // move in this column wherever it is so history stays consistent.
+        int i = totalCount-1;
+        while (history[i] != col) i--;
+        System.arraycopy(history,i+1,history,i,totalCount-1-i);
         totalCount--;
         return colCounts[col];
     }
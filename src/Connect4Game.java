@@ -1,4 +1,5 @@
-import java.io.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Logic that runs the game. Needs a bunch of refactoring, but it works for now.
@@ -41,10 +42,27 @@ public class Connect4Game
 	private int p1GamesWon, p2GamesWon;
 	private int p1Points, p2Points;
 
+	// Search numbers of each player (by id) over this game and this
+	// match, for players that report them.
+	private SearchStats[] gameStats, matchStats;
+
 	// Maintain an epoch counter that is bumped whenever a new match
 	// starts. This is helpful for UI control.
 	public int epoch;
 
+	// Computer players think on this thread rather than the GUI's, so the
+	// window stays live during a long search.  One thread, so that moves
+	// are worked out one at a time and in order.
+	private static final ExecutorService searches = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Search");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// True from the time step() hands a move to the search thread until
+	// finishStep() makes it.
+	private boolean thinking;
+
 	public Connect4Game(int rows, int cols, String game, int msecPerMove,
 			int numGames, int numRandMoves, boolean matchPlay,
 			String p1ClassFileName, String p2ClassFileName, Connect4 gui)
@@ -129,9 +147,11 @@ public class Connect4Game
 		}
 	}
 
+	// Show a message in the status line.  The log gets it too, but only
+	// at DEBUG, since the important ones are also logged as events.
 	public void status(String status)
 	{
-		System.err.println(status);
+		EventLog.debug("status", "msg", status);
 		gui.updateStatus(status);
 	}
 
@@ -177,6 +197,8 @@ public class Connect4Game
 						+ p1ClassFileName + "'.\n" + "Using " + defaultPlayer
 						+ " instead.";
 				status(msg);
+				EventLog.warn("player.load", "player", 1, "class", p1ClassFileName,
+						"exception", e);
 				gui.showMessageDialog(msg);
 			}
 			if (p1 == null) {
@@ -193,6 +215,8 @@ public class Connect4Game
 						+ p2ClassFileName + "'.\n" + "Using " + defaultPlayer
 						+ " instead.";
 				status(msg);
+				EventLog.warn("player.load", "player", 2, "class", p2ClassFileName,
+						"exception", e);
 				gui.showMessageDialog(msg);
 			}
 			if (p2 == null) {
@@ -205,8 +229,8 @@ public class Connect4Game
 		if ((p2 instanceof HumanPlayer) && p2HumanName != null) {
 			((HumanPlayer) p2).setName(p2HumanName);
 		}
-		p1.init(1, msecPerMove, rows, cols);
-		p2.init(2, msecPerMove, rows, cols);
+		PlayerRunner.init(p1, game, 1, msecPerMove, rows, cols);
+		PlayerRunner.init(p2, game, 2, msecPerMove, rows, cols);
 	}
 
 	// Reset things for a new match.
@@ -214,6 +238,10 @@ public class Connect4Game
 	{
 		epoch++;
 		state = STATE_PAUSED;
+		// Any move still being worked out belongs to the old match, and
+		// finishStep() will throw it away.
+		thinking = false;
+		gui.stopThinking();
 		newGame(true);
 	}
 
@@ -229,7 +257,9 @@ public class Connect4Game
 		p1Points = p2Points = 0;
 		if (newMatch) {
 			p1GamesWon = p2GamesWon = 0;
+			matchStats = new SearchStats[] { null, new SearchStats(), new SearchStats() };
 		}
+		gameStats = new SearchStats[] { null, new SearchStats(), new SearchStats() };
 		initBoardAndPlayers();
 		updateGUI();
 	}
@@ -308,7 +338,7 @@ public class Connect4Game
 		if (whoseTurn == 1 && !(p1 instanceof HumanPlayer)) return;
 		if (whoseTurn == 2 && !(p2 instanceof HumanPlayer)) return;
 		if (!board.isValidMove(col)) return;
-		doMove(col);
+		doMove(col, -1);
 		if (state == STATE_PLAYING) {
 			gui.pressStepButton(this, epoch);
 		}
@@ -320,108 +350,17 @@ public class Connect4Game
 	// Return -1 if there is more than 1 winner.
 	public int calcWinner(Connect4Board board)
 	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int winner = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		return winner;
+		return board.winner();
 	}
 
 	// Return the number of connect-4s that player #id has.
 	public int calcScore(Connect4Board board, int id)
 	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int score = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				if (board.get(r, c + 0) != id) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				score++;
-			}
-		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c) != id) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				score++;
-			}
-		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c + 0) != id) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				score++;
-			}
-		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				if (board.get(r - 0, c + 0) != id) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				score++;
-			}
-		}
-		return score;
+		return board.score(id);
 	}
 
-	private void doMove(int col)
+	// Make a move that took msec to think of (-1 if unknown).
+	private void doMove(int col, long msec)
 	{
 		assert state == STATE_PAUSED || state == STATE_PLAYING : state;
 		assert board.isValidMove(col) : "" + board + col;
@@ -429,20 +368,22 @@ public class Connect4Game
 
 		status(((whoseTurn == 1) ? p1 : p2).name() + " (Player #" + whoseTurn
 				+ ")" + " moves to column #" + col);
+		EventLog.info("move", "game", gameNum, "move", moveNum, "player", whoseTurn,
+				"col", col, "msec", msec);
 		board.move(col, whoseTurn);
 
 		// Check for a winner.
 		boolean gameWon = false;
 		if (game.equals("first")) {
-			int winner = calcWinner(board);
+			int winner = board.winner();
 			if (winner > 0 || board.isFull()) {
 				declareWinner(winner);
 				gameWon = true;
 			}
 		}
 		else if (game.equals("most")) {
-			p1Points = calcScore(board, 1);
-			p2Points = calcScore(board, 2);
+			p1Points = board.score(1);
+			p2Points = board.score(2);
 			if (board.isFull()) {
 				if (p1Points == p2Points)
 					declareWinner(0);
@@ -484,11 +425,17 @@ public class Connect4Game
 			default:
 				throw new Error("bug: winner=" + id);
 		}
+		EventLog.info("result", "game", gameNum, "winner", id,
+				"p1Points", board.score(1), "p2Points", board.score(2), "moves", moveNum);
+		logSearchTotals("game", gameStats);
 		updateGUI();
 		gui.announceGameWinner(msg, gameNum, numGames);
 
 		if (gameNum == numGames) {
 			state = STATE_MATCHOVER;
+			EventLog.info("match", "games", numGames, "p1Won", p1GamesWon,
+					"p2Won", p2GamesWon);
+			logSearchTotals("match", matchStats);
 			if (p1GamesWon > p2GamesWon) {
 				gui.announceMatchWinner(p1.name() + " (Player #1)", p1GamesWon,
 						p2GamesWon);
@@ -504,30 +451,88 @@ public class Connect4Game
 		}
 	}
 
+	// Log each player's search numbers over a game or a match.
+	private void logSearchTotals(String scope, SearchStats[] totals)
+	{
+		for (int id = 1; id <= 2; id++) {
+			SearchStats s = totals[id];
+			if (s.moves == 0) continue;
+			EventLog.info("search.total", "scope", scope, "game", gameNum,
+					"player", id, "moves", s.moves, "summary", s.toString(),
+					"nodes", s.nodes, "nps", s.nps(), "cutoffs", s.cutoffs, "ttHits", s.ttHits);
+		}
+	}
+
 	public void step()
 	{
 		if (state == STATE_MATCHOVER) return;
+		if (thinking) return;
 		if (whoseTurn == 1 && (p1 instanceof HumanPlayer)) return;
 		if (whoseTurn == 2 && (p2 instanceof HumanPlayer)) return;
 		if (board.isFull()) return;
 
-		// Let the next player calculate their next move.
+		// Let the next player calculate their next move.  That happens on
+		// the search thread, so the GUI keeps running while the player
+		// thinks; the move is made back on the GUI thread by finishStep().
 		assert whoseTurn == 1 || whoseTurn == 2 : whoseTurn;
-		Player[] players = { null, p1, p2 };
-		int moveCol = calcMove(board, players[whoseTurn], prevMoveCol,
-				msecPerMove);
+		Player player = (whoseTurn == 1) ? p1 : p2;
+		Connect4Board position = new Connect4Board(board);
+		int prevCol = prevMoveCol;
+		int msecAllowed = msecPerMove;
+		int stepEpoch = epoch;
+		Arbitrator arb = new Arbitrator();
+		thinking = true;
+		gui.startThinking(player.name() + " (Player #" + whoseTurn + ")", arb);
+		searches.execute(() -> {
+			long startTime = System.nanoTime();
+			int moveCol = PlayerRunner.calcMove(player, position, prevCol,
+					msecAllowed, arb);
+			long msec = (System.nanoTime() - startTime) / 1000000;
+			gui.runLater(() -> finishStep(stepEpoch, player, moveCol, msec));
+		});
+	}
+
+	// Make the move that step() asked for, once the player has come up
+	// with it.  Runs on the GUI thread.
+	private void finishStep(int stepEpoch, Player player, int moveCol, long msec)
+	{
+		// A new match started while the player was thinking.
+		if (stepEpoch != epoch) return;
+		thinking = false;
+		gui.stopThinking();
+
+		if (moveCol == PlayerRunner.DISQUALIFIED) {
+			status("Player #" + whoseTurn + " (" + player.name()
+					+ ") is disqualified for taking too much time.");
+			EventLog.warn("disqualified", "game", gameNum, "move", moveNum,
+					"player", whoseTurn, "msec", msecPerMove);
+			moveCol = -1;
+		}
 
 		// Make sure the move is valid. If it is not, then
 		// the other player wins.
 		if (!board.isValidMove(moveCol)) {
-			status("Player #" + whoseTurn + " (" + players[whoseTurn].name()
+			status("Player #" + whoseTurn + " (" + player.name()
 					+ ") made an illegal move in col "+moveCol);
+			EventLog.warn("illegal", "game", gameNum, "move", moveNum,
+					"player", whoseTurn, "col", moveCol, "msec", msec);
 			int winner = (whoseTurn == 1) ? 2 : 1;
 			declareWinner(winner);
 		}
 		else {
+			if (player instanceof Instrumented) {
+				SearchStats stats = ((Instrumented) player).lastSearch();
+				gameStats[whoseTurn].add(stats);
+				matchStats[whoseTurn].add(stats);
+				status(player.name() + " (Player #" + whoseTurn + ") searched: "
+						+ stats);
+				EventLog.info("search", "game", gameNum, "move", moveNum,
+						"player", whoseTurn, "depth", stats.depth, "nodes", stats.nodes,
+						"nps", stats.nps(), "cutoffs", stats.cutoffs, "ttHits", stats.ttHits,
+						"iterMsec", stats.iterationMillis());
+			}
 			// Make the move.
-			doMove(moveCol);
+			doMove(moveCol, msec);
 		}
 		
 		updateGUI();
@@ -540,8 +545,6 @@ public class Connect4Game
 //				Thread.sleep(100); // slow it down a bit to improve animation
 //			} catch (InterruptedException e) {}
 		}
-
-		updateGUI();
 	}
 
 	public void play()
@@ -552,82 +555,10 @@ public class Connect4Game
 	}
 
 	// Given the name of a class that implemements the Player interface,
-	// return an instance of that class. Dynamic loading is cool!
+	// return an instance of that class.
 	private Player getPlayer(String classFileName)
 		throws Exception
 	{
-		File f = new File(classFileName);
-		
-		if (f.getParent() != null) {
-			// The class loader doesn't seem to respect this.
-			// System.setProperty("java.class.path",f.getParent());
-		}
-		ClassLoader loader = ClassLoader.getSystemClassLoader();
-		Class<?> cl = loader.loadClass(f.getName());
-//		return (Player) cl.newInstance(); // this call is deprecated, new way to do it is:
-		return (Player) cl.getDeclaredConstructor().newInstance();
-	}
-
-	// Let player #i calculate their next move. The player is not
-	// permitted to spend more than msecAllowed time to do this
-	// calculation. If the player takes too much time, then we
-	// have it make an illegal move (which forfeits the game).
-	private int calcMove(Connect4Board board, Player player, int prevMoveCol,
-			int msecPerMove)
-	{
-		// Start up the player in a separate thread so we are
-		// protected from its exceptions and infinite loops.
-		Arbitrator arb = new Arbitrator();
-		PlayerThread pt = new PlayerThread(player, board, prevMoveCol, arb);
-		pt.start();
-		long startTime = System.currentTimeMillis();
-		Thread.yield();
-
-		// Let the player think for a while.
-		int msecAllowed = msecPerMove * 120 / 100;
-		int msecPerSpin = msecAllowed / 100;
-		msecPerSpin = Math.max(1, msecPerSpin);
-		while (true) {
-			// If the player is done thinking, then stop spinning.
-			if (!pt.isAlive()) break;
-			// If the max allowed time has elapsed, then stop spinning.
-			if (System.currentTimeMillis() - startTime > msecAllowed) break;
-			// Otherwise, spin.
-			try {
-				Thread.sleep(msecPerSpin);
-			}
-			catch (InterruptedException e) {
-			}
-		}
-
-		// Notify the player thread that time is up. If the player
-		// is already done calculating its next move, then this has
-		// no effect. If the player is still working, then its
-		// next call to checkTime() will cause it to stop.
-		arb.timeUp();
-
-		// Give the player thread time to stop.
-		for (int i = 0; i < 5; i++) {
-			Thread.yield();
-			if (pt.isAlive()) {
-				try {
-					Thread.sleep(100);
-				}
-				catch (InterruptedException e) {
-				}
-			}
-		}
-
-		// If the player thread has still not exited, then disqualify it by
-		// returning an invalid move; otherwise, return whatever move it
-		// calculated.
-		if (pt.isAlive()) {
-			status("Player #" + whoseTurn + " (" + player.name()
-					+ ") is disqualified for taking too much time.");
-			return -1;
-		}
-		else {
-			return arb.getMove();
-		}
+		return PlayerRunner.newPlayer(classFileName);
 	}
 }
@@ -0,0 +1,193 @@
+/**
+ * Solves a position exactly by searching all the way to the end of the
+ * game.  Meant for the endgame, when few enough cells are empty that the
+ * whole remaining tree can be searched within a move.
+ *
+ * The search is negamax over the board's incremental win and score
+ * tracking, with a transposition table, and the exact score is found with
+ * a series of null-window probes that binary search the score range.
+ *
+ * Scores are from the point of view of the player to move:
+ *   "first" game: 0 is a draw.  A win scores the number of cells that were
+ *                 empty just before the winning move, so quicker wins score
+ *                 higher; a loss scores the negation.
+ *   "most" game:  the final difference in connect-4s once the board is full.
+ *
+ */
+public class EndgameSolver
+{
+    private final boolean firstGame;
+    private final TranspositionTable tt;
+    private int[] order;
+    private Arbitrator arb;
+    private long nodes;
+
+    /**
+     * Create a solver.
+     * @param game "first" (first connect-4 wins) or "most" (most connect-4s wins)
+     * @param megabytes Memory budget for the solver's transposition table
+     */
+    public EndgameSolver (String game, int megabytes) {
+        if (!game.equals("first") && !game.equals("most")) {
+            throw new IllegalArgumentException("game=" + game);
+        }
+        this.firstGame = game.equals("first");
+        this.tt = new TranspositionTable(megabytes, TranspositionTable.REPLACE_ALWAYS);
+    }
+
+    /**
+     * Find the exact score of a position.
+     * @param board The position; it is restored before this returns
+     * @param id The player to move
+     * @param arb Checked for time up during the search
+     * @return The score, from the point of view of player id
+     * @throws TimeUpException If the arbitrator says time is up
+     */
+    public int solve (Connect4Board board, int id, Arbitrator arb) throws TimeUpException {
+        this.arb = arb;
+        this.order = MoveOrderer.centerOut(board.numCols());
+        tt.newSearch();
+        int max = maxScore(board);
+        int min = -max;
+        // Binary search the score with null-window probes, starting from 0
+        // since most positions are close to even.
+        while (min < max) {
+            int med = min + (max - min) / 2;
+            if (med <= 0 && min / 2 < med) med = min / 2;
+            else if (med >= 0 && max / 2 > med) med = max / 2;
+            int r = negamax(board, id, med, med + 1);
+            if (r <= med) max = r;
+            else min = r;
+        }
+        return min;
+    }
+
+    /**
+     * Find a move that achieves the exact score of a position.
+     * @param board The position; it is restored before this returns
+     * @param id The player to move
+     * @param score The score returned by solve() for this position
+     * @param arb Checked for time up during the search
+     * @return The column to play
+     * @throws TimeUpException If the arbitrator says time is up
+     */
+    public int bestMove (Connect4Board board, int id, int score, Arbitrator arb) throws TimeUpException {
+        this.arb = arb;
+        this.order = MoveOrderer.centerOut(board.numCols());
+        int fallback = -1;
+        for (int col : order) {
+            if (!board.isValidMove(col)) continue;
+            if (fallback < 0) fallback = col;
+            board.move(col, id);
+            try {
+                if (firstGame && board.lastMoveWins()) {
+                    return col;
+                }
+                // The child scores at most -score from the opponent's side
+                // exactly when this move keeps at least score for us.
+                if (-negamax(board, 3 - id, -score, -score + 1) >= score) {
+                    return col;
+                }
+            }
+            finally {
+                board.unmove(col, id);
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Get the number of positions visited since this solver was created
+     * @return The node count
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Describe a solved score, e.g. "win in 5" or "draw".
+     * @param board The position that was solved
+     * @param score The score returned by solve()
+     * @return The outcome and how many moves (both players) until the game ends
+     */
+    public String describe (Connect4Board board, int score) {
+        String outcome = (score > 0) ? "win" : (score < 0) ? "loss" : "draw";
+        int plies = board.numEmptyCells();
+        if (firstGame && score != 0) {
+            plies = board.numEmptyCells() - Math.abs(score) + 1;
+        }
+        return outcome + " in " + plies;
+    }
+
+    // The largest score possible from this position.
+    private int maxScore (Connect4Board board) {
+        if (firstGame) {
+            return board.numEmptyCells();
+        }
+        // Every window of four could be a connect-4.
+        int r = board.numRows(), c = board.numCols();
+        return r*(c-3) + c*(r-3) + 2*(r-3)*(c-3);
+    }
+
+    // Exact negamax score for player id to move, fail-soft within (α, β).
+    private int negamax (Connect4Board board, int id, int α, int β) throws TimeUpException {
+        nodes++;
+        arb.checkTime();
+
+        if (firstGame) {
+            // A move that connects four ends the game right away.
+            int empty = board.numEmptyCells();
+            for (int col : order) {
+                if (!board.isValidMove(col)) continue;
+                board.move(col, id);
+                boolean won = board.lastMoveWins();
+                board.unmove(col, id);
+                if (won) return empty;
+            }
+        }
+        if (board.isFull()) {
+            return firstGame ? 0 : board.score(id) - board.score(3 - id);
+        }
+
+        long key = board.canonicalKey(id);
+        long entry = tt.probe(key);
+        if (entry != 0) {
+            int ttScore = TranspositionTable.score(entry);
+            switch (TranspositionTable.bound(entry)) {
+            case TranspositionTable.EXACT: return ttScore;
+            case TranspositionTable.LOWER: α = Math.max(α, ttScore); break;
+            case TranspositionTable.UPPER: β = Math.min(β, ttScore); break;
+            }
+            if (α >= β) {
+                return ttScore;
+            }
+        }
+        int α0 = α;
+
+        int best = Integer.MIN_VALUE;
+        int bestCol = -1;
+        for (int col : order) {
+            if (!board.isValidMove(col)) continue;
+            board.move(col, id);
+            int score;
+            try {
+                score = -negamax(board, 3 - id, -β, -α);
+            }
+            finally {
+                board.unmove(col, id);
+            }
+            if (score > best) {
+                best = score;
+                bestCol = col;
+            }
+            if (best > α) α = best;
+            if (α >= β) break;
+        }
+
+        int bound = (best <= α0) ? TranspositionTable.UPPER
+            : (best >= β) ? TranspositionTable.LOWER
+            : TranspositionTable.EXACT;
+        tt.store(key, board.numEmptyCells(), bound, best, board.canonicalCol(bestCol));
+        return best;
+    }
+}
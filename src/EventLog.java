@@ -0,0 +1,224 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An asynchronous event log.  Logging an event just puts it in a bounded
+ * ring buffer; a background thread formats the events and writes them
+ * out, so a player's time is never spent waiting on the console.  If the
+ * buffer is ever full, events are dropped (and counted) rather than
+ * making the caller wait.
+ *
+ * An event is a name and a list of key/value fields, written one per
+ * line in key=value form; values with spaces, quotes, backslashes or
+ * line breaks are quoted, with those characters escaped:
+ *
+ *   12:34:56.789 INFO  move game=1 move=7 player=2 col=3 msec=251
+ *
+ * Properties:
+ *   connect4.log         file to write to (default: stderr)
+ *   connect4.log.level   ERROR, WARN, INFO, DEBUG or TRACE (default INFO,
+ *                        also used, with a warning, for an unknown level)
+ *   connect4.log.buffer  events the buffer holds (default 8192)
+ *   connect4.trace       turn on search tracing (and the TRACE level)
+ *
+ * Search code guards its tracing with "if (EventLog.TRACE)".  TRACE is a
+ * constant, so with tracing off the JIT removes the test and the tracing
+ * code along with it.
+ *
+ */
+public final class EventLog
+{
+    public enum Level { ERROR, WARN, INFO, DEBUG, TRACE }
+
+    /** True if search tracing is on; fixed for the life of the program. */
+    public static final boolean TRACE = Boolean.getBoolean("connect4.trace");
+
+    private static final Level threshold = TRACE ? Level.TRACE
+        : level(System.getProperty("connect4.log.level", "INFO"));
+
+    private static final ArrayBlockingQueue<Event> buffer =
+        new ArrayBlockingQueue<>(Math.max(16, Integer.getInteger("connect4.log.buffer", 8192)));
+    private static final AtomicLong logged = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile long written;
+    private static final PrintStream out = openOutput(System.getProperty("connect4.log"));
+
+    static {
+        Thread writer = new Thread(EventLog::drain, "EventLog writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    private static final class Event
+    {
+        final long time;
+        final Level level;
+        final String name;
+        final Object[] fields;
+
+        Event (Level level, String name, Object[] fields) {
+            this.time = System.currentTimeMillis();
+            this.level = level;
+            this.name = name;
+            this.fields = fields;
+        }
+    }
+
+    private EventLog() {}
+
+    // A bad level must not stop the class from loading: every later call
+    // would then fail with NoClassDefFoundError.
+    private static Level level (String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Unknown connect4.log.level " + name + "; using INFO.");
+            return Level.INFO;
+        }
+    }
+
+    private static PrintStream openOutput (String path) {
+        if (path != null) {
+            try {
+                return new PrintStream(new FileOutputStream(path, true), false);
+            }
+            catch (IOException e) {
+                System.err.println("Can't open log " + path + ": " + e + "; using stderr.");
+            }
+        }
+        return System.err;
+    }
+
+    /**
+     * Check if events at a level are written.  Callers can test this
+     * before gathering the fields of an expensive event.
+     * @param level The level to check
+     * @return True if events at this level are logged
+     */
+    public static boolean enabled (Level level) {
+        return level.ordinal() <= threshold.ordinal();
+    }
+
+    /**
+     * Log an event, if its level is enabled.
+     * @param level How important the event is
+     * @param name What happened, e.g. "move"
+     * @param fields Alternating keys and values; a Throwable value also
+     *               has its stack trace written
+     */
+    public static void log (Level level, String name, Object... fields) {
+        if (!enabled(level)) return;
+        logged.incrementAndGet();
+        if (!buffer.offer(new Event(level, name, fields))) {
+            logged.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    public static void error (String name, Object... fields) { log(Level.ERROR, name, fields); }
+    public static void warn (String name, Object... fields) { log(Level.WARN, name, fields); }
+    public static void info (String name, Object... fields) { log(Level.INFO, name, fields); }
+    public static void debug (String name, Object... fields) { log(Level.DEBUG, name, fields); }
+    public static void trace (String name, Object... fields) { log(Level.TRACE, name, fields); }
+
+    /**
+     * Wait until everything logged so far has been written.
+     * @param msec The longest to wait
+     */
+    public static void flush (long msec) {
+        long target = logged.get();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(msec);
+        while (written < target && System.nanoTime() < end) {
+            try {
+                Thread.sleep(1);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // The writer thread: take events off the buffer a batch at a time
+    // and write them, flushing once the buffer is empty.
+    private static void drain() {
+        SimpleDateFormat clock = new SimpleDateFormat("HH:mm:ss.SSS");
+        StringBuilder line = new StringBuilder();
+        List<Event> batch = new ArrayList<>();
+        long droppedReported = 0;
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            }
+            catch (InterruptedException e) {
+                continue;
+            }
+            buffer.drainTo(batch);
+            for (Event e : batch) {
+                write(e, clock, line);
+            }
+            long d = dropped.get();
+            if (d != droppedReported) {
+                out.println(clock.format(new Date()) + " WARN  log.dropped events=" + (d - droppedReported));
+                droppedReported = d;
+            }
+            out.flush();
+            written += batch.size();
+            batch.clear();
+        }
+    }
+
+    private static void write (Event e, SimpleDateFormat clock, StringBuilder line) {
+        line.setLength(0);
+        line.append(clock.format(new Date(e.time))).append(' ');
+        line.append(String.format("%-5s ", e.level)).append(e.name);
+        Throwable thrown = null;
+        for (int i = 0; i + 1 < e.fields.length; i += 2) {
+            Object v = e.fields[i+1];
+            if (v instanceof Throwable) thrown = (Throwable) v;
+            String s = String.valueOf(v);
+            line.append(' ').append(e.fields[i]).append('=');
+            appendValue(line, s);
+        }
+        out.println(line);
+        if (thrown != null) {
+            thrown.printStackTrace(out);
+        }
+    }
+
+    // Quote a value if it needs it, escaping anything that would break
+    // the one-event-per-line format.
+    private static void appendValue (StringBuilder line, String s) {
+        boolean quote = s.isEmpty();
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = (c == ' ' || c == '"' || c == '\\' || c == '\n' || c == '\r');
+        }
+        if (!quote) {
+            line.append(s);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                default:   line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * A player that needs to know which game is being played: "first" (the
+ * first connect-4 wins) or "most" (the most connect-4s once the board is
+ * full wins).  The game calls setGame() before init(); see
+ * PlayerRunner.init().
+ *
+ */
+public interface GameAware
+{
+    /**
+     * Say which game is being played.
+     *
+     * @param game "first" or "most"
+     */
+    void setGame(String game);
+}
@@ -0,0 +1,16 @@
+/**
+ * A player that can say what its last search did.  The game asks after
+ * each calcMove() that returned in time, and adds the answers up per game
+ * and per match.
+ *
+ */
+public interface Instrumented
+{
+    /**
+     * Describe the last calcMove().  Only called once calcMove() has
+     * returned, so implementations need no locking.
+     *
+     * @return The numbers for the last move
+     */
+    SearchStats lastSearch();
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Connect-4 player that runs AlphaBeta's search on several threads at
+ * once, Lazy SMP style.  The main thread searches exactly like AlphaBeta
+ * and is the only one that reports moves.  Helper threads run their own
+ * iterative deepening on board copies, half of them one ply ahead and each
+ * with the root columns rotated, and share the transposition table with
+ * the main thread.  What they store there lets the main search skip work,
+ * so there is no limit on the number of threads like with a root split.
+ *
+ * The number of threads (main thread included) is taken from the
+ * connect4.smp.threads property and defaults to the number of cores.
+ *
+ * @author Alexis Pak
+ *
+ */
+public class LazySMP extends AlphaBeta {
+
+	private Searcher[] helpers;
+	private static ExecutorService helperPool;
+
+
+	@Override
+	public String name() {
+		return "Lazy Balph";
+	}
+
+	@Override
+	public void init(int id, int msecPerMove, int rows, int cols) {
+		super.init(id, msecPerMove, rows, cols);
+		int smpThreads = Integer.getInteger("connect4.smp.threads",
+				Runtime.getRuntime().availableProcessors());
+		boolean ordering = !"plain".equals(System.getProperty("connect4.ordering"));
+		helpers = new Searcher[Math.max(0, smpThreads - 1)];
+		for(int i = 0; i < helpers.length; i++) {
+			helpers[i] = new Searcher(id, rows, cols, tt, ordering);
+		}
+		if (helpers.length > 0) {
+			helperPool = helperPool();
+		}
+	}
+
+	// The helpers replace the root split.
+	@Override
+	int rootThreads() {
+		return 1;
+	}
+
+	// Helper threads are shared by every LazySMP player in the process and
+	// are daemons, so an abandoned game can't keep the program alive.
+	private static synchronized ExecutorService helperPool() {
+		if (helperPool == null) {
+			helperPool = Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "LazySMP helper");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return helperPool;
+	}
+
+	@Override
+	public void calcMove(
+			Connect4Board board, int oppMoveCol, Arbitrator arb)
+					throws TimeUpException {
+		if (board.isFull()) {
+			throw new Error ("Complaint: The board is full!");
+		}
+		// The helpers get their own arbitrator so that we can stop them as
+		// soon as the main search is done, even if that is before time is up.
+		Arbitrator helperArb = new Arbitrator();
+		List<Future<?>> running = new ArrayList<>();
+		newSearch();
+		for(int i = 0; i < helpers.length; i++) {
+			Searcher s = helpers[i];
+			Connect4Board copy = new Connect4Board(board);
+			int startDepth = 1 + (i % 2);
+			int shift = i + 1;
+			running.add(helperPool.submit(() -> {
+				s.orderer.newSearch();
+				s.pv = new int[0];
+				int n = s.orderer.order(copy, 0, id, -1, -1);
+				int[] order = new int[n];
+				for(int j = 0; j < n; j++) {
+					order[j] = s.orderer.moves(0)[(j + shift) % n];
+				}
+				try {
+					deepen(s, copy, order, n, startDepth, helperArb, false);
+				}
+				catch (TimeUpException e) {
+				}
+			}));
+		}
+
+		try {
+			mainSearch(board, arb);
+		}
+		finally {
+			helperArb.timeUp();
+			for (Future<?> f : running) {
+				try {
+					f.get();
+				}
+				catch (ExecutionException e) {
+					// A helper that crashed only costs us its help, but
+					// say so, or it looks just like one that worked.
+					EventLog.error("smp.helper", "player", id, "exception", e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	// Add up the running totals of every search thread, helpers included.
+	@Override
+	void count(SearchStats total) {
+		super.count(total);
+		for (Searcher s : helpers) s.count(total);
+	}
+}
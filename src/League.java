@@ -0,0 +1,319 @@
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a round-robin league between any number of player classes and
+ * rates them.
+ *
+ * Every pair of players meets the same number of times.  Games come in
+ * pairs: both games start from the same seed position, and the players
+ * swap sides between them, so neither one gets the better of a lucky
+ * seed.  All the games run in parallel like TournamentRunner's, and each
+ * result is appended to the results file as soon as it is known, so a
+ * long league can be watched (or salvaged) while it runs.
+ *
+ * Each run starts its part of the results file with a header line giving
+ * when it started and its settings, then writes one line per game:
+ *
+ *   # league 2024-05-01T12:00:00 rows=6 cols=7 game=most msec=250 ...
+ *   AlphaBeta LazySMP 1-0 points=4-2 moves=31
+ *
+ * that is, player #1, player #2, the result, the connect-4s each made,
+ * the number of moves, and "forfeit" if a player lost on time or by an
+ * illegal move.
+ *
+ * At the end, ratings are fitted to all the results by maximum likelihood
+ * under the Elo model, with a draw counting as half a win.  As in
+ * BayesElo, every player also gets a couple of virtual draws against the
+ * same fixed opponent, which keeps the rating of a player who won or lost
+ * every game finite.  The interval printed with each rating is a 95%
+ * confidence interval from the curvature of the likelihood.
+ *
+ */
+public class League
+{
+	// Virtual draws each player gets against the prior's fixed opponent.
+	private static final double PRIOR_DRAWS = 2;
+
+	// Ratings are reported with this average.
+	private static final double MEAN_RATING = 1500;
+
+	// One finished game: the players by index into the player list,
+	// and player #1's score (1, 0.5 or 0).
+	static class Game
+	{
+		final int p1, p2;
+		final double p1Score;
+
+		Game(int p1, int p2, double p1Score)
+		{
+			this.p1 = p1;
+			this.p2 = p2;
+			this.p1Score = p1Score;
+		}
+	}
+
+	// Print program usage and exit.
+	private static void usage() {
+		System.err.println();
+		System.err.println("usage: League [options] player player...");
+		System.err.println();
+		System.err.println("    r - Number of rows, >= 4.");
+		System.err.println("    c - Number of columns, >= 4.");
+		System.err.println("    n - Number of games per pairing, even.");
+		System.err.println("    t - Time allowed per move (msec).");
+		System.err.println("   nr - Number of random moves, even, >=0, <=rows*cols.");
+		System.err.println(" seed - Seed for the random moves, for repeatable leagues.");
+		System.err.println(" game - Which game to play:");
+		System.err.println("        first - First Connect-4 wins.");
+		System.err.println("         most - Most Connect-4s wins.");
+		System.err.println("    j - Number of games to play at once (default: #cores).");
+		System.err.println("    o - File the results are appended to (default league.txt).");
+		System.err.println();
+		System.err.println("The player classes must be in CLASSPATH.");
+		System.err.println();
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int rows = 6;
+		int cols = 7;
+		String game = "most";
+		int msec = 250;
+		int ngames = 2;
+		int numRandMoves = 4;
+		Long seed = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String out = "league.txt";
+		List<String> players = new ArrayList<>();
+
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-r")) {
+				if (++i == args.length) usage();
+				rows = Integer.parseInt(args[i]);
+				if (rows < 4) usage();
+				continue;
+			}
+			if (args[i].equals("-c")) {
+				if (++i == args.length) usage();
+				cols = Integer.parseInt(args[i]);
+				if (cols < 4) usage();
+				continue;
+			}
+			if (args[i].equals("-nr")) {
+				if (++i == args.length) usage();
+				numRandMoves = Integer.parseInt(args[i]);
+				if (numRandMoves < 0) usage();
+				if ((numRandMoves % 2) == 1) usage();
+				continue;
+			}
+			if (args[i].equals("-game")) {
+				if (++i == args.length) usage();
+				game = args[i];
+				if (!game.equals("first") && !game.equals("most")) usage();
+				continue;
+			}
+			if (args[i].equals("-t")) {
+				if (++i == args.length) usage();
+				msec = Integer.parseInt(args[i]);
+				if (msec < 0) usage();
+				continue;
+			}
+			if (args[i].equals("-n")) {
+				if (++i == args.length) usage();
+				ngames = Integer.parseInt(args[i]);
+				if (ngames < 2 || (ngames % 2) == 1) usage();
+				continue;
+			}
+			if (args[i].equals("-seed")) {
+				if (++i == args.length) usage();
+				seed = Long.parseLong(args[i]);
+				continue;
+			}
+			if (args[i].equals("-j")) {
+				if (++i == args.length) usage();
+				threads = Integer.parseInt(args[i]);
+				if (threads < 1) usage();
+				continue;
+			}
+			if (args[i].equals("-o")) {
+				if (++i == args.length) usage();
+				out = args[i];
+				continue;
+			}
+			if (args[i].startsWith("-")) usage();
+			players.add(args[i]);
+		}
+		if (numRandMoves > rows*cols) usage();
+		if (players.size() < 2) usage();
+
+		TournamentRunner runner = new TournamentRunner(rows, cols, game, msec,
+				numRandMoves, false);
+		Random rand = (seed == null) ? new Random() : new Random(seed);
+		String[] names = new String[players.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = PlayerRunner.newPlayer(players.get(i)).name()
+					+ " [" + players.get(i) + "]";
+		}
+
+		ConcurrentLinkedQueue<Game> results = new ConcurrentLinkedQueue<>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> games = new ArrayList<>();
+		long startTime = System.currentTimeMillis();
+		try (PrintWriter log = new PrintWriter(new FileWriter(out, true))) {
+			log.println("# league "
+					+ LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS)
+					+ " rows=" + rows + " cols=" + cols + " game=" + game
+					+ " msec=" + msec + " games=" + ngames + " nr=" + numRandMoves
+					+ " seed=" + ((seed == null) ? "random" : seed)
+					+ " players=" + String.join(",", players));
+			log.flush();
+			for (int a = 0; a < names.length; a++) {
+				for (int b = a + 1; b < names.length; b++) {
+					for (int k = 0; k < ngames; k += 2) {
+						// Each seed position is played twice, once from each side.
+						Connect4Board start = runner.startingBoard(1, null, rand);
+						games.add(submit(pool, runner, players, a, b, start, results, log));
+						games.add(submit(pool, runner, players, b, a, start, results, log));
+					}
+				}
+			}
+			for (Future<?> f : games) {
+				f.get();
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		long elapsed = System.currentTimeMillis() - startTime;
+
+		Game[] all = results.toArray(new Game[0]);
+		double[] ratings = new double[names.length];
+		double[] errors = new double[names.length];
+		rate(all, ratings, errors);
+		report(all, names, ratings, errors);
+		System.out.println(all.length + " games in " + elapsed + " msec ("
+				+ String.format(Locale.ROOT, "%.1f", all.length * 1000.0 / Math.max(1, elapsed))
+				+ " games/sec); results in " + out);
+	}
+
+	// Queue one game, which records its result when it is done.
+	private static Future<?> submit(ExecutorService pool, TournamentRunner runner,
+			List<String> players, int p1, int p2, Connect4Board start,
+			ConcurrentLinkedQueue<Game> results, PrintWriter log)
+	{
+		return pool.submit(() -> {
+			TournamentRunner.Result r = runner.play(players.get(p1), players.get(p2), start, 1);
+			double p1Score = (r.winner == 1) ? 1 : (r.winner == 2) ? 0 : 0.5;
+			results.add(new Game(p1, p2, p1Score));
+			String line = players.get(p1) + " " + players.get(p2) + " "
+					+ ((r.winner == 1) ? "1-0" : (r.winner == 2) ? "0-1" : "1/2-1/2")
+					+ " points=" + r.p1Points + "-" + r.p2Points + " moves=" + r.moves
+					+ ((r.forfeit != 0) ? " forfeit" : "");
+			synchronized (log) {
+				log.println(line);
+				log.flush();
+			}
+			return null;
+		});
+	}
+
+	// Expected score of a player rated d points above their opponent.
+	private static double expected(double d)
+	{
+		return 1 / (1 + Math.pow(10, -d / 400));
+	}
+
+	// Fit ratings to the results and estimate each one's 95% confidence
+	// interval.  The fit uses the minorization-maximization updates for
+	// the Bradley-Terry model, which always converge, on each player's
+	// strength 10^(rating/400).  The prior is a fixed opponent of strength 1.
+	static void rate(Game[] games, double[] ratings, double[] errors)
+	{
+		int n = ratings.length;
+		double[] strength = new double[n];
+		double[] score = new double[n];
+		Arrays.fill(strength, 1);
+		Arrays.fill(score, PRIOR_DRAWS * 0.5);
+		for (Game g : games) {
+			score[g.p1] += g.p1Score;
+			score[g.p2] += 1 - g.p1Score;
+		}
+		double[] denom = new double[n];
+		for (int iter = 0; iter < 10000; iter++) {
+			for (int i = 0; i < n; i++) {
+				denom[i] = PRIOR_DRAWS / (strength[i] + 1);
+			}
+			for (Game g : games) {
+				double d = 1 / (strength[g.p1] + strength[g.p2]);
+				denom[g.p1] += d;
+				denom[g.p2] += d;
+			}
+			double biggest = 0;
+			for (int i = 0; i < n; i++) {
+				double next = score[i] / denom[i];
+				biggest = Math.max(biggest, Math.abs(Math.log10(next / strength[i])));
+				strength[i] = next;
+			}
+			if (biggest * 400 < 0.01) break;
+		}
+
+		// Fisher information of each rating, with the others held fixed.
+		double k = Math.log(10) / 400;
+		double[] info = new double[n];
+		for (int i = 0; i < n; i++) {
+			ratings[i] = 400 * Math.log10(strength[i]);
+			double e = expected(ratings[i]);
+			info[i] = PRIOR_DRAWS * e * (1 - e);
+		}
+		for (Game g : games) {
+			double e = expected(ratings[g.p1] - ratings[g.p2]);
+			info[g.p1] += e * (1 - e);
+			info[g.p2] += e * (1 - e);
+		}
+		double mean = Arrays.stream(ratings).average().orElse(0);
+		for (int i = 0; i < n; i++) {
+			ratings[i] += MEAN_RATING - mean;
+			errors[i] = 1.96 / (k * Math.sqrt(info[i]));
+		}
+	}
+
+	// Print the table, best player first.
+	private static void report(Game[] games, String[] names, double[] ratings,
+			double[] errors)
+	{
+		int n = names.length;
+		double[] points = new double[n];
+		int[] played = new int[n];
+		for (Game g : games) {
+			points[g.p1] += g.p1Score;
+			points[g.p2] += 1 - g.p1Score;
+			played[g.p1]++;
+			played[g.p2]++;
+		}
+		Integer[] rank = new Integer[n];
+		for (int i = 0; i < n; i++) rank[i] = i;
+		Arrays.sort(rank, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+		System.out.println(String.format(Locale.ROOT, "%4s %-40s %6s %6s %6s %6s",
+				"Rank", "Player", "Elo", "+/-", "Games", "Score"));
+		for (int r = 0; r < n; r++) {
+			int i = rank[r];
+			System.out.println(String.format(Locale.ROOT, "%4d %-40s %6.0f %6.0f %6d %5.1f%%",
+					r + 1, names[i], ratings[i], errors[i], played[i],
+					(played[i] == 0) ? 0 : 100 * points[i] / played[i]));
+		}
+	}
+}
@@ -4,12 +4,15 @@
  * @author Alexis Pak
  *
  */
-public class Minimax implements Player {
+public class Minimax implements Player, Instrumented {
 
 	private static java.util.Random rand = new java.util.Random();
 	int id;
 	int opponent_id;
 	int cols;
+	TimeManager time;
+	//what the last search did
+	final SearchStats stats = new SearchStats();
 
 
 	@Override
@@ -22,6 +25,7 @@ public class Minimax implements Player {
 		this.id = id; //id is your player's id, opponent's id is 3-id
 		opponent_id = 3 -id;
 		this.cols = cols;
+		time = new TimeManager(msecPerMove);
 	}
 
 	@Override
@@ -33,35 +37,48 @@ public class Minimax implements Player {
 			throw new Error ("Complaint: The board is full!");
 		}
 		int maxDepth = 1;
+		time.start(arb);
+		stats.start();
 
 		//While there is time remaining and search depth is <= the number of moves remaining
 		int bestCol = -1, bestScore = -1;
 		//Have minnie start at a random place instead of starting at the same column
 		int startCol = rand.nextInt(board.numCols());
-		while(!arb.isTimeUp() && maxDepth <= board.numEmptyCells()) {
-			bestScore = -100;
-			for(int col1 = 0; col1 < board.numCols(); col1++) {
-				int col = (col1 + startCol) % board.numCols();
-				System.out.println("col = " + col + ", maxDepth = " + maxDepth + ", bestCol = " + bestCol + ", bestScore = " + bestScore);
-				if (board.isValidMove(col)) {
-					board.move(col, id);
-					int score = minimax(board, maxDepth -1, false, arb);
-					if(score > bestScore) {
-						bestCol = col;
-						bestScore = score;
+		try {
+			while(!arb.isTimeUp() && maxDepth <= board.numEmptyCells()) {
+				bestScore = -100;
+				for(int col1 = 0; col1 < board.numCols(); col1++) {
+					int col = (col1 + startCol) % board.numCols();
+					if (board.isValidMove(col)) {
+						board.move(col, id);
+						int score = minimax(board, maxDepth -1, false, arb);
+						if(score > bestScore) {
+							bestCol = col;
+							bestScore = score;
+						}
+						board.unmove(col, id);
 					}
-					board.unmove(col, id);
 				}
+				//run the first level of the minimax search and set move to be the best column corresponding to be best score
+				//
+				if (EventLog.TRACE) {
+					EventLog.trace("iteration", "player", id, "depth", maxDepth,
+							"score", bestScore, "col", bestCol, "nodes", stats.nodes);
+				}
+				arb.setMove(bestCol);
+				arb.setProgress(maxDepth, bestScore);
+				stats.iterationDone(maxDepth);
+				maxDepth++; 
+				//stop if the next depth won't finish in time
+				time.iterationDone(bestCol);
+				if (time.shouldStop()) break;
 			}
-			//run the first level of the minimax search and set move to be the best column corresponding to be best score
-			//
-			maxDepth++; 
-			arb.setMove(bestCol);
-	}
+		}
+		finally {
+			stats.stop();
+		}
 		if (bestCol >= 0) {
-			System.out.println("bestCol = " + bestCol);
 			arb.setMove(bestCol);
-			System.out.println("arb.getMove = " + arb.getMove());
 		}
 		else {
 			throw new Error ("Complaint: Something is wrong!");
@@ -71,9 +88,10 @@ public class Minimax implements Player {
 	public int minimax(Connect4Board board, int depth, boolean isMaximizing, Arbitrator arb) {
 		//		if depth = 0 or no moves or time is up
 		//				return the heuristic value of node
+		stats.nodes++;
 
 		if (depth == 0 || board.isFull() || arb.isTimeUp()) {
-			return calcScore(board,id) - calcScore(board, opponent_id);
+			return board.score(id) - board.score(opponent_id);
 		}
 		//	if isMaximizing then
 		if (isMaximizing) {
@@ -107,109 +125,23 @@ public class Minimax implements Player {
 		}
 	}
 
-	// return the number of connect-4s that player #id has.
+	@Override
+	public SearchStats lastSearch() {
+		return stats;
+	}
+
+	// Return the id (>0) of the winner for normal connect-4 play.
+	// Return 0 if there is no winner.
+	// Return -1 if there is more than 1 winner.
 	public int calcWinner(Connect4Board board)
 	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int winner = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				int id = board.get(r, c);
-				if (id == 0) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				if (winner != 0 && winner != id) return -1;
-				winner = id;
-			}
-		}
-		return winner;
+		return board.winner();
 	}
 
 	// Return the number of connect-4s that player #id has.
 	public int calcScore(Connect4Board board, int id)
 	{
-		final int rows = board.numRows();
-		final int cols = board.numCols();
-		int score = 0;
-		// Look for horizontal connect-4s.
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c <= cols - 4; c++) {
-				if (board.get(r, c + 0) != id) continue;
-				if (board.get(r, c + 1) != id) continue;
-				if (board.get(r, c + 2) != id) continue;
-				if (board.get(r, c + 3) != id) continue;
-				score++;
-			}
-		}
-		// Look for vertical connect-4s.
-		for (int c = 0; c < cols; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c) != id) continue;
-				if (board.get(r + 1, c) != id) continue;
-				if (board.get(r + 2, c) != id) continue;
-				if (board.get(r + 3, c) != id) continue;
-				score++;
-			}
-		}
-		// Look for diagonal connect-4s.
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = 0; r <= rows - 4; r++) {
-				if (board.get(r + 0, c + 0) != id) continue;
-				if (board.get(r + 1, c + 1) != id) continue;
-				if (board.get(r + 2, c + 2) != id) continue;
-				if (board.get(r + 3, c + 3) != id) continue;
-				score++;
-			}
-		}
-		for (int c = 0; c <= cols - 4; c++) {
-			for (int r = rows - 1; r >= 4 - 1; r--) {
-				if (board.get(r - 0, c + 0) != id) continue;
-				if (board.get(r - 1, c + 1) != id) continue;
-				if (board.get(r - 2, c + 2) != id) continue;
-				if (board.get(r - 3, c + 3) != id) continue;
-				score++;
-			}
-		}
-		//System.out.println("id = " + id + ", score = " + score);
-		return score;
+		return board.score(id);
 	}
 
 }
@@ -0,0 +1,183 @@
+/**
+ * Chooses the order in which a search tries the columns of a position.
+ *
+ * Moves suggested by the caller (principal variation, transposition table)
+ * come first, then the killer moves for the ply, then the rest sorted by
+ * the history heuristic with ties broken center-out.  Center columns take
+ * part in more connect-4s, so they tend to be the strongest moves.
+ *
+ * An orderer keeps per-ply state, so each search thread needs its own.
+ *
+ */
+public class MoveOrderer
+{
+    private final int rows, cols;
+    private final boolean heuristics;
+
+    // Columns from the center out, e.g. 3,2,4,1,5,0,6 for 7 columns.
+    private final int[] centerOut;
+
+    // Two killer moves per ply: recent moves that caused a cutoff at that
+    // ply in a sibling position.  -1 means empty.
+    private final int[] killer1, killer2;
+
+    // history[id][cell] grows each time player id dropping a piece in cell
+    // (row*cols+col) caused a cutoff, weighted by the remaining depth.
+    private final int[][] history;
+
+    // Per-ply scratch arrays that order() fills in.
+    private final int[][] moves;
+    private final int[] keys;
+
+    /**
+     * Create an orderer using center-out ordering, killer moves and the
+     * history heuristic.
+     * @param rows Number of rows of the board
+     * @param cols Number of columns of the board
+     */
+    public MoveOrderer (int rows, int cols) {
+        this(rows, cols, true);
+    }
+
+    /**
+     * Create an orderer.
+     * @param rows Number of rows of the board
+     * @param cols Number of columns of the board
+     * @param heuristics False to just try columns left to right after the
+     *        caller's suggestions, which is handy for comparisons
+     */
+    public MoveOrderer (int rows, int cols, boolean heuristics) {
+        this.rows = rows;
+        this.cols = cols;
+        this.heuristics = heuristics;
+        this.centerOut = heuristics ? centerOut(cols) : leftToRight(cols);
+        int maxPly = rows*cols + 1;
+        this.killer1 = new int [maxPly];
+        this.killer2 = new int [maxPly];
+        this.history = new int [3][rows*cols];
+        this.moves = new int [maxPly][cols];
+        this.keys = new int [cols];
+        java.util.Arrays.fill(killer1, -1);
+        java.util.Arrays.fill(killer2, -1);
+    }
+
+    /**
+     * Get the columns ordered from the center out.  For an even number of
+     * columns the left of the two middle columns comes first.
+     * @param cols Number of columns
+     * @return The column order
+     */
+    public static int[] centerOut (int cols) {
+        int[] order = new int [cols];
+        int mid = (cols - 1) / 2;
+        for (int i = 0; i < cols; i++) {
+            // mid, mid+1, mid-1, mid+2, ... for even cols; mid, mid-1, mid+1, ... for odd
+            int offset = (i + 1) / 2;
+            boolean right = (cols % 2 == 0) ? (i % 2 == 1) : (i % 2 == 0);
+            order[i] = right ? mid + offset : mid - offset;
+        }
+        return order;
+    }
+
+    private static int[] leftToRight (int cols) {
+        int[] order = new int [cols];
+        for (int i = 0; i < cols; i++) order[i] = i;
+        return order;
+    }
+
+    /**
+     * Start a new search.  Killer moves are cleared and the history scores
+     * are halved so that older results count for less.
+     */
+    public void newSearch() {
+        java.util.Arrays.fill(killer1, -1);
+        java.util.Arrays.fill(killer2, -1);
+        for (int[] h : history) {
+            for (int i = 0; i < h.length; i++) h[i] >>= 1;
+        }
+    }
+
+    /**
+     * Order the valid moves of a position.  The result is left in moves(ply).
+     * @param board The position
+     * @param ply Distance from the root of the search
+     * @param id The player to move
+     * @param first A column to try first, or -1
+     * @param second A column to try next, or -1
+     * @return The number of valid moves
+     */
+    public int order (Connect4Board board, int ply, int id, int first, int second) {
+        int[] out = moves[ply];
+        int n = 0;
+        if (first >= 0 && board.isValidMove(first)) {
+            out[n++] = first;
+        }
+        if (second >= 0 && second != first && board.isValidMove(second)) {
+            out[n++] = second;
+        }
+        int fixed = n;
+        if (heuristics) {
+            int k = killer1[ply];
+            if (k >= 0 && !contains(out, n, k) && board.isValidMove(k)) out[n++] = k;
+            k = killer2[ply];
+            if (k >= 0 && !contains(out, n, k) && board.isValidMove(k)) out[n++] = k;
+            fixed = n;
+        }
+        for (int i = 0; i < cols; i++) {
+            int col = centerOut[i];
+            if (!board.isValidMove(col) || contains(out, fixed, col)) continue;
+            // Insertion sort by history; equal scores keep center-out order.
+            int h = heuristics ? history[id][board.numOccupiedCells(col)*cols + col] : 0;
+            int j = n;
+            while (j > fixed && keys[j-1] < h) {
+                out[j] = out[j-1];
+                keys[j] = keys[j-1];
+                j--;
+            }
+            out[j] = col;
+            keys[j] = h;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Get the moves left by the last call to order() for a ply.
+     * @param ply Distance from the root of the search
+     * @return The ordered columns
+     */
+    public int[] moves (int ply) {
+        return moves[ply];
+    }
+
+    /**
+     * Record that a move caused a beta cutoff.  Call this after the move
+     * has been undone.
+     * @param board The position the move was made from
+     * @param ply Distance from the root of the search
+     * @param id The player who made the move
+     * @param col The column that was played
+     * @param depth The remaining search depth at the position
+     */
+    public void cutoff (Connect4Board board, int ply, int id, int col, int depth) {
+        if (!heuristics) return;
+        if (killer1[ply] != col) {
+            killer2[ply] = killer1[ply];
+            killer1[ply] = col;
+        }
+        int cell = board.numOccupiedCells(col)*cols + col;
+        history[id][cell] += depth * depth;
+        if (history[id][cell] > (1 << 24)) {
+            for (int[] h : history) {
+                for (int i = 0; i < h.length; i++) h[i] >>= 1;
+            }
+        }
+    }
+
+    private static boolean contains (int[] a, int n, int v) {
+        for (int i = 0; i < n; i++) {
+            if (a[i] == v) return true;
+        }
+        return false;
+    }
+}
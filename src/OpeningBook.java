@@ -0,0 +1,175 @@
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A read-only opening book: a file of positions with the move to play in
+ * each, as written by BookGenerator.
+ *
+ * The file is memory-mapped and probed with a binary search over the
+ * mapped bytes, so a lookup takes microseconds and the book costs no heap
+ * no matter how large it is.
+ *
+ * Positions are stored under their canonical key, so a position and its
+ * mirror image take one entry between them.
+ *
+ * File layout (big-endian):
+ *   int    magic "C4BK"
+ *   int    version (3)
+ *   int    rows
+ *   int    cols
+ *   UTF    the game the scores are for, "first" or "most"
+ *          (DataOutput.writeUTF: a 2-byte length, then the bytes)
+ *   int    number of entries
+ *   then one 12-byte entry per position, sorted by key:
+ *     long  position key, see positionKey()
+ *     short column to play in the canonical position
+ *     short score of that column for the player to move
+ *
+ */
+public class OpeningBook
+{
+    private static final int MAGIC = 0x43344B42; // "C4BK"
+    private static final int VERSION = 3;
+    private static final int HEADER = 20; // without the game name
+    private static final int ENTRY = 12;
+
+    private final MappedByteBuffer buf;
+    private final int rows, cols, size;
+    private final String game;
+    // Where the entries start, after the variable-length header.
+    private final int base;
+
+    /**
+     * Open a book file.
+     * @param path The file written by BookGenerator
+     * @throws IOException If the file can't be read or is not a book
+     */
+    public OpeningBook (String path) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(path, "r");
+             FileChannel ch = f.getChannel()) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("not an opening book: " + path);
+        }
+        rows = buf.getInt(8);
+        cols = buf.getInt(12);
+        int len = buf.getShort(16) & 0xFFFF;
+        if (buf.capacity() < HEADER + len) {
+            throw new IOException("truncated opening book: " + path);
+        }
+        byte[] name = new byte [len];
+        buf.get(18, name);
+        game = new String(name, StandardCharsets.UTF_8);
+        size = buf.getInt(18 + len);
+        base = HEADER + len;
+        if (buf.capacity() < base + (long) size * ENTRY) {
+            throw new IOException("truncated opening book: " + path);
+        }
+    }
+
+    /**
+     * Get the number of positions in the book
+     * @return The entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the game the book was built for
+     * @return "first" or "most"
+     */
+    public String game() {
+        return game;
+    }
+
+    /**
+     * Get the key a position is stored under.
+     * @param board The position
+     * @param id The player to move
+     * @return The board's canonical key, adjusted for whose turn it is
+     */
+    public static long positionKey (Connect4Board board, int id) {
+        return board.canonicalKey(id);
+    }
+
+    /**
+     * Look up the move to play in a position.
+     * @param board The position
+     * @param id The player to move
+     * @return The column to play, or -1 if the position is not in the book
+     */
+    public int probe (Connect4Board board, int id) {
+        int i = find(board, id);
+        return (i < 0) ? -1 : board.canonicalCol(buf.getShort(base + i*ENTRY + 8));
+    }
+
+    /**
+     * Look up the score of the book move in a position.
+     * @param board The position
+     * @param id The player to move
+     * @return The score for player id, or Integer.MIN_VALUE if the position is not in the book
+     */
+    public int probeScore (Connect4Board board, int id) {
+        int i = find(board, id);
+        return (i < 0) ? Integer.MIN_VALUE : buf.getShort(base + i*ENTRY + 10);
+    }
+
+    private int find (Connect4Board board, int id) {
+        if (board.numRows() != rows || board.numCols() != cols) {
+            return -1;
+        }
+        long key = positionKey(board, id);
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = buf.getLong(base + mid*ENTRY);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Write a book file.
+     * @param path Where to write the book
+     * @param rows Number of rows of the board the keys came from
+     * @param cols Number of columns of the board the keys came from
+     * @param game The game the scores are for, "first" or "most"
+     * @param keys Position keys, see positionKey(); need not be sorted
+     * @param moves The column to play for each key, in the canonical position
+     * @param scores The score of that column for each key
+     * @param n The number of entries to write
+     * @throws IOException If the file can't be written
+     */
+    public static void write (String path, int rows, int cols, String game,
+                              long[] keys, int[] moves, int[] scores, int n)
+        throws IOException {
+        Integer[] idx = new Integer [n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        Arrays.sort(idx, (a, b) -> Long.compare(keys[a], keys[b]));
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeUTF(game);
+            out.writeInt(n);
+            for (int i : idx) {
+                out.writeLong(keys[i]);
+                out.writeShort(moves[i]);
+                out.writeShort(scores[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads players and runs their moves under the time limit.  Shared by the
+ * GUI game and the headless tournament runner, and has no GUI code in it
+ * so that it can be used where JavaFX is not installed.
+ *
+ * Moves run on a pool of worker threads that is shared by every game in
+ * the process, rather than on a new thread per move.  The workers are
+ * daemons, so a player that never returns can't keep the program alive;
+ * it just keeps its worker, and the pool makes another.  The
+ * connect4.move.threads property picks the kind of worker:
+ *   platform  a cached pool of ordinary threads (the default)
+ *   virtual   a virtual thread per move, on JVMs that have them
+ *
+ */
+final class PlayerRunner
+{
+	// Returned by calcMove() when the player would not stop thinking.
+	static final int DISQUALIFIED = -2;
+
+	private static final ExecutorService workers = newWorkers(
+			System.getProperty("connect4.move.threads", "platform"));
+
+	// How long a player gets to stop once told that time is up.
+	private static final int MSEC_TO_STOP = 500;
+
+	private PlayerRunner() {}
+
+	private static ExecutorService newWorkers(String kind)
+	{
+		if (kind.equals("virtual")) {
+			try {
+				return (ExecutorService) Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch (ReflectiveOperationException e) {
+				EventLog.warn("move.threads", "msg", "No virtual threads in this JVM; using platform threads.");
+			}
+		}
+		else if (!kind.equals("platform")) {
+			throw new IllegalArgumentException("connect4.move.threads=" + kind);
+		}
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "Player " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	// Given the name of a class that implemements the Player interface,
+	// return an instance of that class. Dynamic loading is cool!
+	static Player newPlayer(String classFileName)
+		throws Exception
+	{
+		File f = new File(classFileName);
+
+		if (f.getParent() != null) {
+			// The class loader doesn't seem to respect this.
+			// System.setProperty("java.class.path",f.getParent());
+		}
+		ClassLoader loader = ClassLoader.getSystemClassLoader();
+		Class<?> cl = loader.loadClass(f.getName());
+//		return (Player) cl.newInstance(); // this call is deprecated, new way to do it is:
+		return (Player) cl.getDeclaredConstructor().newInstance();
+	}
+
+	// Get a player ready for a game: tell it which game it is, if it
+	// wants to know, and then init() it.
+	static void init(Player player, String game, int id, int msecPerMove,
+			int rows, int cols)
+	{
+		if (player instanceof GameAware) {
+			((GameAware) player).setGame(game);
+		}
+		player.init(id, msecPerMove, rows, cols);
+	}
+
+	// Let the player calculate their next move. The player is not
+	// permitted to spend more than msecAllowed time to do this
+	// calculation. Returns the move, which may be invalid, or
+	// DISQUALIFIED if the player did not stop when told to.
+	static int calcMove(Player player, Connect4Board board, int prevMoveCol,
+			int msecPerMove)
+	{
+		return calcMove(player, board, prevMoveCol, msecPerMove, new Arbitrator());
+	}
+
+	// Same, with an arbitrator the caller made, so that it can watch the
+	// player's progress from another thread while this one waits.
+	static int calcMove(Player player, Connect4Board board, int prevMoveCol,
+			int msecPerMove, Arbitrator arb)
+	{
+		// Start up the player on a worker thread so we are
+		// protected from its exceptions and infinite loops.
+		long startTime = System.nanoTime();
+		long msecAllowed = msecPerMove * 120 / 100;
+		long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(msecAllowed);
+		arb.setDeadline(deadline);
+		Future<?> pt = workers.submit(new PlayerTask(player, board, prevMoveCol, arb));
+
+		// Let the player think for a while.  We wake up the moment the
+		// player returns, or when the max allowed time has elapsed.
+		awaitUntil(pt, deadline);
+
+		// Notify the player that time is up. If the player is already
+		// done calculating its next move, then this has no effect. If
+		// the player is still working, then its next call to
+		// checkTime() will cause it to stop.
+		arb.timeUp();
+
+		// Give the player time to stop.
+		if (!pt.isDone()) {
+			awaitUntil(pt, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MSEC_TO_STOP));
+		}
+
+		// If the player has still not returned, then disqualify it;
+		// otherwise, return whatever move it calculated.
+		if (!pt.isDone()) {
+			return DISQUALIFIED;
+		}
+		else {
+			return arb.getMove();
+		}
+	}
+
+	// Wait until the task is done or the deadline (System.nanoTime())
+	// has passed, whichever is first.
+	private static void awaitUntil(Future<?> task, long deadline)
+	{
+		while (!task.isDone()) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) return;
+			try {
+				task.get(remaining, TimeUnit.NANOSECONDS);
+			}
+			catch (InterruptedException | TimeoutException e) {
+			}
+			catch (ExecutionException | CancellationException e) {
+				return;
+			}
+		}
+	}
+}
@@ -1,13 +1,13 @@
 /**
- * The thread within which the player's calcMove() method is called.
- * We need to keep the player in a separate thread in order to keep
+ * The task within which the player's calcMove() method is called.
+ * We need to keep the player off the game's thread in order to keep
  * the game running in the event that the player misbehaves or
- * crashes.
+ * crashes.  Tasks run on PlayerRunner's worker pool.
  * 
  * @author Daniel Szafir
  *
  */
-class PlayerThread extends Thread
+class PlayerTask implements Runnable
 {
     private Player player;
     private Connect4Board board;
@@ -16,7 +16,7 @@ class PlayerThread extends Thread
 
     // Make sure to copy the board in the constructor so that the
     // player can't do any damage to the real board.
-    public PlayerThread (
+    public PlayerTask (
         Player player, Connect4Board board, int oppMoveCol, Arbitrator arb) {
         this.player = player;
         this.board = new Connect4Board(board);
@@ -28,6 +28,11 @@ class PlayerThread extends Thread
         try {
             player.calcMove(board,oppMoveCol,arb);
         } catch (TimeUpException e) {
+        } catch (RuntimeException | Error e) {
+            // Report it like an uncaught exception would, but keep the
+            // worker thread alive for the next move.
+            EventLog.error("player.exception", "player", player.getClass().getName(),
+                           "exception", e);
         }
     }
 }
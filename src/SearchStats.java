@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * What a search player did: positions visited, cutoffs, transposition
+ * table hits, depth completed and time taken.  One of these describes a
+ * single calcMove(), or with add() the moves of a whole game or match.
+ *
+ * Search threads count into their own plain fields (see Searcher), and a
+ * player only adds them up into one of these once its search is over, so
+ * keeping the numbers costs the search next to nothing.
+ *
+ */
+public class SearchStats
+{
+    /** Number of calcMove() calls added up here. */
+    public int moves;
+    /** Positions visited, over every search thread. */
+    public long nodes;
+    /** Searches cut off early by a score outside the window. */
+    public long cutoffs;
+    /** Transposition table lookups, and how many of them found the position. */
+    public long ttProbes, ttHits;
+    /** Deepest iteration completed, summed over the moves. */
+    public long depth;
+    /** Time spent in calcMove(), summed over the moves. */
+    public long nanos;
+
+    // Time of each completed iteration of a single move.
+    private long[] iterationNanos = new long [0];
+    private long started, lastIteration;
+
+    public SearchStats() {
+    }
+
+    /**
+     * Copy another move's (or game's) numbers, iteration times included.
+     * @param that The numbers to copy
+     */
+    public SearchStats (SearchStats that) {
+        add(that);
+        iterationNanos = that.iterationNanos.clone();
+    }
+
+    /**
+     * Forget everything and start timing a new move.
+     */
+    public void start() {
+        moves = 1;
+        nodes = cutoffs = ttProbes = ttHits = depth = nanos = 0;
+        iterationNanos = new long [0];
+        started = lastIteration = System.nanoTime();
+    }
+
+    /**
+     * Note that an iteration of the move being timed finished.
+     * @param depth The depth that iteration searched to
+     */
+    public void iterationDone (int depth) {
+        long now = System.nanoTime();
+        this.depth = depth;
+        iterationNanos = Arrays.copyOf(iterationNanos, iterationNanos.length + 1);
+        iterationNanos[iterationNanos.length - 1] = now - lastIteration;
+        lastIteration = now;
+    }
+
+    /**
+     * Stop timing the move.
+     */
+    public void stop() {
+        nanos = System.nanoTime() - started;
+    }
+
+    /**
+     * Get how long each iteration of a single move took
+     * @return Nanoseconds per completed iteration, shallowest first
+     */
+    public long[] iterationNanos() {
+        return iterationNanos.clone();
+    }
+
+    /**
+     * Describe how long each iteration of a single move took
+     * @return Milliseconds per iteration, shallowest first, e.g. "0.1,0.4,1.7"
+     */
+    public String iterationMillis() {
+        StringBuilder s = new StringBuilder();
+        for (long n : iterationNanos) {
+            if (s.length() > 0) s.append(',');
+            s.append(String.format(Locale.ROOT, "%.1f", n / 1e6));
+        }
+        return s.toString();
+    }
+
+    /**
+     * Add another move's (or game's) numbers to these.
+     * @param that The numbers to add
+     */
+    public void add (SearchStats that) {
+        moves += that.moves;
+        nodes += that.nodes;
+        cutoffs += that.cutoffs;
+        ttProbes += that.ttProbes;
+        ttHits += that.ttHits;
+        depth += that.depth;
+        nanos += that.nanos;
+    }
+
+    /**
+     * Get the search speed
+     * @return Positions visited per second
+     */
+    public long nps() {
+        return (nanos == 0) ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Summarize, e.g. "depth 11.0, 1234567 nodes, 10287 knps, 3% cutoffs, 41% tt hits".
+     */
+    public String toString() {
+        String s = String.format(Locale.ROOT, "depth %.1f, %d nodes, %d knps",
+                (moves == 0) ? 0.0 : (double) depth / moves, nodes, nps() / 1000);
+        if (cutoffs > 0) {
+            s += String.format(Locale.ROOT, ", %d%% cutoffs", 100 * cutoffs / Math.max(1, nodes));
+        }
+        if (ttProbes > 0) {
+            s += String.format(Locale.ROOT, ", %d%% tt hits", 100 * ttHits / ttProbes);
+        }
+        return s;
+    }
+}
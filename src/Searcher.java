@@ -0,0 +1,179 @@
+/**
+ * The alpha-beta search behind AlphaBeta, split out so that several threads
+ * can each run their own copy.  A Searcher keeps per-thread state (move
+ * ordering, principal variation, node count) and is not thread safe; the
+ * transposition table it uses may be shared between Searchers.
+ *
+ * Scores are always from the point of view of player id.
+ *
+ * @author Alexis Pak
+ *
+ */
+class Searcher {
+
+	// Scores are connect-4 differences, so these are well outside any real score.
+	static final int INFINITY = 1000;
+
+	final int id;
+	final int opponent_id;
+	final TranspositionTable tt;
+	final MoveOrderer orderer;
+
+	// Principal variation of the last completed iteration, tried first on
+	// the next one.  rootBestCol is the best column of the last root search.
+	int[] pv = new int[0];
+	int rootBestCol;
+
+	// Number of positions visited, for comparing tweaks, and how the
+	// search went.  Only ever touched by the thread using this searcher.
+	long nodes;
+	long cutoffs;
+	long ttProbes, ttHits;
+
+	Searcher(int id, int rows, int cols, TranspositionTable tt, boolean ordering) {
+		this.id = id;
+		this.opponent_id = 3 - id;
+		this.tt = tt;
+		this.orderer = new MoveOrderer(rows, cols, ordering);
+	}
+
+	// Search every root column at the given depth inside (α, β).  Leaves the
+	// best column in rootBestCol and returns its score.
+	int searchRoot(Connect4Board board, int[] order, int n, int depth, int α, int β, Arbitrator arb)
+			throws TimeUpException {
+		int bestScore = -INFINITY;
+		rootBestCol = order[0];
+		for(int i = 0; i < n; i++) {
+			int col = order[i];
+			int score = searchChild(board, col, depth, Math.max(α, bestScore), β, i == 0, arb);
+			if(score > bestScore) {
+				bestScore = score;
+				rootBestCol = col;
+			}
+			if(bestScore >= β) {
+				break;
+			}
+		}
+		return bestScore;
+	}
+
+	// Play our move in col, search the reply at depth-1 and undo the move.
+	int searchChild(Connect4Board board, int col, int depth, int α, int β, boolean onPv, Arbitrator arb)
+			throws TimeUpException {
+		board.move(col, id);
+		try {
+			return search(board, depth -1, 1, α, β, false, onPv, arb);
+		}
+		finally {
+			board.unmove(col, id);
+		}
+	}
+
+	// Alpha-beta search of the position after ply moves from the root.
+	// onPv is true while we are following the previous principal variation.
+	int search(Connect4Board board, int depth, int ply, int α, int β, boolean isMaximizing, boolean onPv, Arbitrator arb)
+			throws TimeUpException {
+		nodes++;
+		arb.checkTime();
+		//		if depth = 0 or no moves
+		//				return the heuristic value of node
+
+		if (depth == 0 || board.isFull()) {
+			return board.score(id) - board.score(opponent_id);
+		}
+
+		// See if we have already searched this position deep enough.
+		// Scores are always from our point of view, so the key only
+		// needs to say whose turn it is.  Mirror images share an entry.
+		long key = board.canonicalKey(isMaximizing ? id : opponent_id);
+		int ttMove = -1;
+		if (tt != null) {
+			long entry = tt.probe(key);
+			ttProbes++;
+			if (entry != 0) {
+				ttHits++;
+				ttMove = board.canonicalCol(TranspositionTable.move(entry));
+				if (TranspositionTable.depth(entry) >= depth) {
+					int ttScore = TranspositionTable.score(entry);
+					switch (TranspositionTable.bound(entry)) {
+					case TranspositionTable.EXACT: return ttScore;
+					case TranspositionTable.LOWER: α = Math.max(α, ttScore); break;
+					case TranspositionTable.UPPER: β = Math.min(β, ttScore); break;
+					}
+					if (α >= β) {
+						return ttScore;
+					}
+				}
+			}
+		}
+		int α0 = α, β0 = β;
+
+		// Try the principal variation first, then the table's best move,
+		// then whatever the orderer suggests.
+		int pvMove = (onPv && ply < pv.length) ? pv[ply] : -1;
+		int mover = isMaximizing ? id : opponent_id;
+		int bestScore = isMaximizing ? -INFINITY : INFINITY;
+		int bestCol = -1;
+		int n = orderer.order(board, ply, mover, pvMove, ttMove);
+		int[] moves = orderer.moves(ply);
+		for(int i = 0; i < n; i++) {
+			int col = moves[i];
+
+			board.move(col, mover);
+			int score;
+			try {
+				score = search(board, depth -1, ply +1, α, β, !isMaximizing, col == pvMove, arb);
+			}
+			finally {
+				board.unmove(col, mover);
+			}
+
+			if (isMaximizing ? score > bestScore : score < bestScore) {
+				bestScore = score;
+				bestCol = col;
+			}
+			if (isMaximizing) α = Math.max(α, bestScore);
+			else β = Math.min(β, bestScore);
+			if(α >= β) {
+				cutoffs++;
+				orderer.cutoff(board, ply, mover, col, depth);
+				break;
+			}
+		}
+
+		if (tt != null) {
+			int bound = (bestScore <= α0) ? TranspositionTable.UPPER
+					: (bestScore >= β0) ? TranspositionTable.LOWER
+					: TranspositionTable.EXACT;
+			tt.store(key, depth, bound, bestScore, board.canonicalCol(bestCol));
+		}
+		return bestScore;
+	}
+
+	// Add this searcher's counts to stats.
+	void count(SearchStats stats) {
+		stats.nodes += nodes;
+		stats.cutoffs += cutoffs;
+		stats.ttProbes += ttProbes;
+		stats.ttHits += ttHits;
+	}
+
+	// Rebuild the principal variation by following best moves through the
+	// transposition table, starting with our root move.
+	int[] principalVariation(Connect4Board board, int rootCol, int depth) {
+		int[] line = new int[depth];
+		int n = 0;
+		Connect4Board b = new Connect4Board(board);
+		int mover = id;
+		int col = rootCol;
+		while (n < depth && col >= 0 && b.isValidMove(col)) {
+			line[n++] = col;
+			b.move(col, mover);
+			mover = 3 - mover;
+			if (tt == null) break;
+			long entry = tt.probe(b.canonicalKey(mover));
+			col = (entry != 0) ? b.canonicalCol(TranspositionTable.move(entry)) : -1;
+		}
+		return java.util.Arrays.copyOf(line, n);
+	}
+}
@@ -0,0 +1,31 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A ForkJoinPool kept for the life of the process, so that a new player
+ * every game does not mean new threads every game.  Each kind of player
+ * that searches in parallel keeps its own.
+ *
+ * There is one pool at a time: asking for a different number of threads
+ * shuts the old pool down, rather than just dropping it, so its threads
+ * don't pile up.  Tasks already running on it still finish.
+ *
+ */
+final class SharedPool
+{
+    private ForkJoinPool pool;
+
+    /**
+     * Get the pool, making a new one if the size has changed
+     * @param threads The parallelism wanted
+     * @return A pool with that parallelism
+     */
+    synchronized ForkJoinPool get (int threads) {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Decides when an iterative-deepening player should stop searching.
+ *
+ * The game calls Arbitrator.timeUp() at 120% of the time per move, and
+ * whatever the unfinished iteration found is thrown away.  So before each
+ * new iteration we predict how long it will take, from how long the last
+ * one took times the growth from the one before (the effective branching
+ * factor), and don't start it unless it is expected to finish in time.
+ *
+ * "In time" normally means within the time per move.  When the best move
+ * just changed, the search hasn't settled, and we let the next iteration
+ * run on into the game's extra 20%, up to a small safety margin before
+ * timeUp().
+ *
+ */
+public class TimeManager
+{
+    // Assumed growth from one depth to the next before there are two
+    // iterations to measure it from.
+    private static final double DEFAULT_BRANCHING = 4;
+    private static final double MIN_BRANCHING = 1.5;
+    private static final double MAX_BRANCHING = 10;
+
+    private final int msecPerMove;
+    private long start, soft, hard;
+    private long iterationStart, last, previous;
+    private int bestCol;
+    private boolean unstable;
+
+    /**
+     * Create a time manager for a player.
+     * @param msecPerMove The time per move the player was given in init()
+     */
+    public TimeManager (int msecPerMove) {
+        this.msecPerMove = msecPerMove;
+    }
+
+    /**
+     * Start timing a move.  Call this when calcMove() starts.
+     * @param arb The move's arbitrator, which knows when time will be up
+     */
+    public void start (Arbitrator arb) {
+        start = iterationStart = System.nanoTime();
+        long deadline = arb.deadline();
+        long allowed = (deadline == Long.MAX_VALUE)
+            ? msecPerMove * 1_200_000L
+            : Math.max(0, deadline - start);
+        soft = start + allowed * 100 / 120;
+        hard = start + allowed - Math.max(1_000_000L, allowed / 20);
+        last = previous = 0;
+        bestCol = -1;
+        unstable = false;
+    }
+
+    /**
+     * Note that an iteration finished.
+     * @param col The best move that iteration found
+     */
+    public void iterationDone (int col) {
+        long now = System.nanoTime();
+        previous = last;
+        last = now - iterationStart;
+        iterationStart = now;
+        unstable = (bestCol >= 0 && col != bestCol);
+        bestCol = col;
+    }
+
+    /**
+     * Check if another iteration is unlikely to finish in time.
+     * @return True if the search should stop now and play its best move
+     */
+    public boolean shouldStop() {
+        double branching = (previous > 0)
+            ? Math.max(MIN_BRANCHING, Math.min(MAX_BRANCHING, (double) last / previous))
+            : DEFAULT_BRANCHING;
+        double finish = System.nanoTime() + last * branching;
+        return finish > (unstable ? hard : soft);
+    }
+
+    /**
+     * Get the time since start()
+     * @return Elapsed time in milliseconds
+     */
+    public long elapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays a match between two players without the GUI, for running many
+ * games in a row on a machine with no display.  The rules are the same as
+ * in Connect4Game: random seed moves, match play, "first" and "most"
+ * games, and the time limit per move, with an illegal or late move
+ * forfeiting the game.
+ *
+ * Games are independent, so several are played at once, by default one
+ * per core.  Each game's result is printed to stdout as it finishes,
+ * followed by a summary of the match.
+ *
+ */
+public class TournamentRunner
+{
+	// The rules of every game in the match.
+	final int rows, cols;
+	final String game;
+	final int msecPerMove;
+	final int numSeedMoves;
+	final boolean matchPlay;
+
+	// How a game ended.
+	static class Result
+	{
+		int winner;		// 1 or 2, 0 for a draw
+		int forfeit;	// the player who lost by an illegal or late move, or 0
+		int p1Points, p2Points;
+		int moves;
+		// What each player's searches did, for players that say.
+		final SearchStats[] stats = { null, new SearchStats(), new SearchStats() };
+	}
+
+	TournamentRunner(int rows, int cols, String game, int msecPerMove,
+			int numSeedMoves, boolean matchPlay)
+	{
+		assert ((numSeedMoves % 2) == 0);
+		assert (numSeedMoves >= 0);
+		assert (numSeedMoves <= rows * cols);
+		assert (game.equals("first") || game.equals("most"));
+
+		this.rows = rows;
+		this.cols = cols;
+		this.game = game;
+		this.msecPerMove = msecPerMove;
+		this.numSeedMoves = numSeedMoves;
+		this.matchPlay = matchPlay;
+	}
+
+	// Print program usage and exit.
+	private static void usage() {
+		System.err.println();
+		System.err.println("usage: TournamentRunner [options]");
+		System.err.println();
+		System.err.println("    r - Number of rows, >= 4.");
+		System.err.println("    c - Number of columns, >= 4.");
+		System.err.println("    n - Number of games per match.");
+		System.err.println("    t - Time allowed per move (msec).");
+		System.err.println("   p1 - Class name for player #1.");
+		System.err.println("   p2 - Class name for player #2.");
+		System.err.println("   mp - Match play?  One of {on,off}.");
+		System.err.println("   nr - Number of random moves, even, >=0, <=rows*cols.");
+		System.err.println(" seed - Seed for the random moves, for repeatable matches.");
+		System.err.println(" game - Which game to play:");
+		System.err.println("        first - First Connect-4 wins.");
+		System.err.println("         most - Most Connect-4s wins.");
+		System.err.println("    j - Number of games to play at once (default: #cores).");
+		System.err.println("    q - Quiet: only print the summary.");
+		System.err.println();
+		System.err.println("The player classes must be in CLASSPATH.");
+		System.err.println();
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int rows = 6;
+		int cols = 7;
+		String game = "most";
+		int msec = 250;
+		int ngames = 1;
+		int numRandMoves = 0;
+		boolean matchPlay = false;
+		Long seed = null;
+		boolean quiet = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String p1 = null;
+		String p2 = null;
+
+		for (int i=0; i<args.length; i++) {
+			if (args[i].equals("-r")) {
+				if (++i == args.length) usage();
+				rows = Integer.parseInt(args[i]);
+				if (rows < 4) usage();
+				continue;
+			}
+			if (args[i].equals("-c")) {
+				if (++i == args.length) usage();
+				cols = Integer.parseInt(args[i]);
+				if (cols < 4) usage();
+				continue;
+			}
+			if (args[i].equals("-nr")) {
+				if (++i == args.length) usage();
+				numRandMoves = Integer.parseInt(args[i]);
+				if (numRandMoves < 0) usage();
+				if ((numRandMoves % 2) == 1) usage();
+				continue;
+			}
+			if (args[i].equals("-game")) {
+				if (++i == args.length) usage();
+				game = args[i];
+				if (!game.equals("first") && !game.equals("most")) usage();
+				continue;
+			}
+			if (args[i].equals("-mp")) {
+				if (++i == args.length) usage();
+				if (!args[i].equals("on")
+						&& !args[i].equals("off")) usage();
+				matchPlay = args[i].equals("on");
+				continue;
+			}
+			if (args[i].equals("-t")) {
+				if (++i == args.length) usage();
+				msec = Integer.parseInt(args[i]);
+				if (msec < 0) usage();
+				continue;
+			}
+			if (args[i].equals("-p1")) {
+				if (++i == args.length) usage();
+				p1 = args[i];
+				continue;
+			}
+			if (args[i].equals("-p2")) {
+				if (++i == args.length) usage();
+				p2 = args[i];
+				continue;
+			}
+			if (args[i].equals("-n")) {
+				if (++i == args.length) usage();
+				ngames = Integer.parseInt(args[i]);
+				if (ngames < 1) usage();
+				continue;
+			}
+			if (args[i].equals("-seed")) {
+				if (++i == args.length) usage();
+				seed = Long.parseLong(args[i]);
+				continue;
+			}
+			if (args[i].equals("-j")) {
+				if (++i == args.length) usage();
+				threads = Integer.parseInt(args[i]);
+				if (threads < 1) usage();
+				continue;
+			}
+			if (args[i].equals("-q")) {
+				quiet = true;
+				continue;
+			}
+			usage();
+		}
+		if (numRandMoves > rows*cols) usage();
+		if (p1 == null || p2 == null) usage();
+		// Match play needs an even number of games.
+		if (matchPlay && (ngames % 2) == 1) ngames++;
+
+		TournamentRunner runner = new TournamentRunner(rows, cols, game, msec,
+				numRandMoves, matchPlay);
+		Random rand = (seed == null) ? new Random() : new Random(seed);
+		runner.runMatch(p1, p2, ngames, rand, threads, quiet);
+		EventLog.flush(1000);
+	}
+
+	// Play a match, several games at a time, and print the results.
+	void runMatch(String p1, String p2, int ngames, Random rand, int threads,
+			boolean quiet)
+		throws Exception
+	{
+		String p1Name = PlayerRunner.newPlayer(p1).name() + " [" + p1 + "]";
+		String p2Name = PlayerRunner.newPlayer(p2).name() + " [" + p2 + "]";
+
+		// Every starting board is drawn up front, in game order, so that a
+		// seed gives the same games however they end up being scheduled.
+		Connect4Board[] startingBoards = new Connect4Board[ngames + 1];
+		for (int gameNum = 1; gameNum <= ngames; gameNum++) {
+			startingBoards[gameNum] = startingBoard(gameNum,
+					startingBoards[gameNum - 1], rand);
+		}
+
+		// Games are independent, so each runs on its own pool thread with
+		// its own board and players.  Only the tallies are shared.
+		AtomicInteger p1GamesWon = new AtomicInteger();
+		AtomicInteger p2GamesWon = new AtomicInteger();
+		AtomicInteger draws = new AtomicInteger();
+		Result[] results = new Result[ngames + 1];
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, ngames));
+		List<Future<?>> games = new ArrayList<>();
+		long startTime = System.currentTimeMillis();
+		try {
+			for (int gameNum = 1; gameNum <= ngames; gameNum++) {
+				int g = gameNum;
+				games.add(pool.submit(() -> {
+					Result r = play(p1, p2, startingBoards[g], 2 - (g % 2));
+					results[g] = r;
+					switch (r.winner) {
+						case 1: p1GamesWon.incrementAndGet(); break;
+						case 2: p2GamesWon.incrementAndGet(); break;
+						default: draws.incrementAndGet();
+					}
+					if (!quiet) {
+						System.out.println("Game " + g + " of " + ngames + ": "
+								+ describe(r, p1Name, p2Name));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> f : games) {
+				f.get();
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		long elapsed = System.currentTimeMillis() - startTime;
+
+		System.out.println("Player #1 " + p1Name + ": " + p1GamesWon + " won");
+		System.out.println("Player #2 " + p2Name + ": " + p2GamesWon + " won");
+		System.out.println("Drawn: " + draws);
+		// Every game has finished, so the stats can be added up safely.
+		SearchStats[] total = { null, new SearchStats(), new SearchStats() };
+		for (int g = 1; g <= ngames; g++) {
+			total[1].add(results[g].stats[1]);
+			total[2].add(results[g].stats[2]);
+		}
+		for (int id = 1; id <= 2; id++) {
+			if (total[id].moves > 0) {
+				System.out.println("Player #" + id + " search, " + total[id].moves
+						+ " moves: " + total[id]);
+			}
+		}
+		System.out.println(ngames + " games in " + elapsed + " msec on "
+				+ Math.min(threads, ngames) + " threads ("
+				+ String.format(Locale.ROOT, "%.1f", ngames * 1000.0 / Math.max(1, elapsed))
+				+ " games/sec)");
+	}
+
+	// One line about how a game ended.
+	static String describe(Result r, String p1Name, String p2Name)
+	{
+		String s = (r.winner == 0) ? "draw"
+				: (r.winner == 1 ? p1Name : p2Name) + " (Player #" + r.winner + ") wins";
+		if (r.forfeit != 0) {
+			s += " by forfeit";
+		}
+		s += ", " + r.p1Points + "-" + r.p2Points + " in " + r.moves + " moves";
+		for (int id = 1; id <= 2; id++) {
+			if (r.stats[id].moves > 0) {
+				s += "; #" + id + " " + r.stats[id];
+			}
+		}
+		return s;
+	}
+
+	// The board game gameNum starts from.  In match play every second
+	// game replays the previous one's seed moves with the colors swapped.
+	Connect4Board startingBoard(int gameNum, Connect4Board previous, Random rand)
+	{
+		if (matchPlay && (gameNum % 2) == 0) {
+			Connect4Board b = new Connect4Board(previous);
+			b.reverse();
+			return b;
+		}
+		Connect4Board b = new Connect4Board(rows, cols);
+		for (int i = 0; i < numSeedMoves; i++) {
+			int col = 0;
+			do {
+				col = rand.nextInt(b.numCols());
+			}
+			while (!b.isValidMove(col));
+			b.move(col, 1 + (i % 2));
+		}
+		return b;
+	}
+
+	// Play one game between new instances of the two player classes.
+	Result play(String p1ClassFileName, String p2ClassFileName,
+			Connect4Board startingBoard, int whoseTurn)
+		throws Exception
+	{
+		Player[] players = { null, PlayerRunner.newPlayer(p1ClassFileName),
+				PlayerRunner.newPlayer(p2ClassFileName) };
+		PlayerRunner.init(players[1], game, 1, msecPerMove, rows, cols);
+		PlayerRunner.init(players[2], game, 2, msecPerMove, rows, cols);
+
+		Connect4Board board = new Connect4Board(startingBoard);
+		Result r = new Result();
+		int prevMoveCol = -1;
+		while (!board.isFull()) {
+			long startTime = System.nanoTime();
+			int col = PlayerRunner.calcMove(players[whoseTurn], board,
+					prevMoveCol, msecPerMove);
+			long msec = (System.nanoTime() - startTime) / 1000000;
+			if (EventLog.enabled(EventLog.Level.DEBUG)) {
+				EventLog.debug("move", "move", r.moves + 1, "player", whoseTurn,
+						"col", col, "msec", msec);
+			}
+			if (col == PlayerRunner.DISQUALIFIED) {
+				EventLog.warn("disqualified", "player", whoseTurn,
+						"name", players[whoseTurn].name(), "msec", msec);
+			}
+			else if (players[whoseTurn] instanceof Instrumented) {
+				SearchStats s = ((Instrumented) players[whoseTurn]).lastSearch();
+				r.stats[whoseTurn].add(s);
+				if (EventLog.enabled(EventLog.Level.DEBUG)) {
+					EventLog.debug("search", "move", r.moves + 1, "player", whoseTurn,
+							"depth", s.depth, "nodes", s.nodes, "iterMsec", s.iterationMillis());
+				}
+			}
+
+			// An illegal move loses the game.
+			if (!board.isValidMove(col)) {
+				r.forfeit = whoseTurn;
+				r.winner = 3 - whoseTurn;
+				break;
+			}
+			board.move(col, whoseTurn);
+			r.moves++;
+			if (game.equals("first") && board.winner() > 0) {
+				r.winner = board.winner();
+				break;
+			}
+			whoseTurn = 3 - whoseTurn;
+			prevMoveCol = col;
+		}
+
+		r.p1Points = board.score(1);
+		r.p2Points = board.score(2);
+		if (r.forfeit == 0 && game.equals("most") && r.p1Points != r.p2Points) {
+			r.winner = (r.p1Points > r.p2Points) ? 1 : 2;
+		}
+		EventLog.debug("result", "p1", p1ClassFileName, "p2", p2ClassFileName,
+				"winner", r.winner, "forfeit", r.forfeit, "p1Points", r.p1Points,
+				"p2Points", r.p2Points, "moves", r.moves);
+		return r;
+	}
+}
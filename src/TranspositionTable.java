@@ -0,0 +1,159 @@
+/**
+ * A fixed-size transposition table for search players, keyed by
+ * Connect4Board.canonicalKey() so that a position and its mirror image
+ * share an entry.
+ *
+ * The table is a single long[] with two longs per entry: the position key
+ * xor'd with the packed data, followed by the data itself.  A probe only
+ * trusts an entry when the two words agree, so several threads can share
+ * one table without locks; a torn or racing write just looks like a miss.
+ *
+ */
+public class TranspositionTable
+{
+    // Bound types stored with each score.
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    // Replacement policies.
+    //   REPLACE_ALWAYS = the newest result always wins the slot
+    //   REPLACE_DEPTH  = keep deeper results from the current search
+    public static final int REPLACE_ALWAYS = 0;
+    public static final int REPLACE_DEPTH = 1;
+
+    // Layout of the data word:
+    //   bits  0-31  score
+    //   bits 32-39  depth
+    //   bits 40-41  bound
+    //   bits 42-49  move+1 (0 means no move)
+    //   bits 50-57  generation
+    //   bit  63     always set so a stored entry is never 0
+    private static final long VALID = 1L << 63;
+
+    private final long[] table;
+    private final int mask;
+    private final int policy;
+    private int generation;
+
+    /**
+     * Create a table using about the given amount of memory.
+     * @param megabytes Memory budget; the entry count is rounded down to a power of two
+     * @param policy REPLACE_ALWAYS or REPLACE_DEPTH
+     */
+    public TranspositionTable (int megabytes, int policy) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("megabytes=" + megabytes);
+        }
+        if (policy != REPLACE_ALWAYS && policy != REPLACE_DEPTH) {
+            throw new IllegalArgumentException("policy=" + policy);
+        }
+        long entries = Long.highestOneBit(((long) megabytes << 20) / 16);
+        entries = Math.min(entries, 1L << 29);
+        this.table = new long [(int) entries * 2];
+        this.mask = (int) entries - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     * @return The table capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Start a new search.  Entries from earlier searches become the first
+     * to be replaced under REPLACE_DEPTH.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Remove every entry from the table.
+     */
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Look up a position.
+     * @param key The position key
+     * @return The packed entry, or 0 if the position is not in the table
+     */
+    public long probe (long key) {
+        int i = ((int) key & mask) << 1;
+        long check = table[i];
+        long data = table[i+1];
+        return ((check ^ data) == key && data != 0) ? data : 0;
+    }
+
+    /**
+     * Store the result of searching a position.
+     * @param key The position key
+     * @param depth Remaining search depth the score was computed with
+     * @param bound EXACT, LOWER or UPPER
+     * @param score The score
+     * @param move The best column found, or -1 if none
+     */
+    public void store (long key, int depth, int bound, int score, int move) {
+        int i = ((int) key & mask) << 1;
+        if (policy == REPLACE_DEPTH) {
+            long old = table[i+1];
+            if (old != 0 && generation(old) == generation
+                && (table[i] ^ old) != key && depth(old) > depth) {
+                return;
+            }
+        }
+        long data = VALID
+            | ((long) generation << 50)
+            | ((long) (move + 1) << 42)
+            | ((long) bound << 40)
+            | ((long) Math.min(depth, 0xFF) << 32)
+            | (score & 0xFFFFFFFFL);
+        table[i] = key ^ data;
+        table[i+1] = data;
+    }
+
+    /**
+     * Get the score of an entry returned by probe()
+     * @param entry A non-zero entry
+     * @return The stored score
+     */
+    public static int score (long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Get the depth of an entry returned by probe()
+     * @param entry A non-zero entry
+     * @return The remaining depth the score was computed with
+     */
+    public static int depth (long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * Get the bound type of an entry returned by probe()
+     * @param entry A non-zero entry
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound (long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    /**
+     * Get the best move of an entry returned by probe()
+     * @param entry A non-zero entry
+     * @return The stored column, or -1 if none
+     */
+    public static int move (long entry) {
+        return ((int) (entry >>> 42) & 0xFF) - 1;
+    }
+
+    private static int generation (long entry) {
+        return (int) (entry >>> 50) & 0xFF;
+    }
+}
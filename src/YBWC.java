@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Connect-4 player that searches in parallel using the Young Brothers
+ * Wait Concept: at each node the eldest (first ordered) child is searched
+ * first, and only once its score is known are the younger brothers split
+ * across a work-stealing ForkJoinPool, each on its own board copy.
+ *
+ * Unlike LazySMP, the result does not depend on thread timing.  Moves are
+ * ordered center-out only, there is no shared transposition table, the
+ * search is fail-hard, and every younger brother is searched with the same
+ * window, so the score of each child and the move chosen at a fixed depth
+ * are exactly those of a serial alpha-beta search.
+ *
+ * Properties:
+ *   connect4.ybwc.threads    worker threads (default: number of cores)
+ *   connect4.ybwc.depth      search exactly this depth, for reproducing
+ *                            games (default: iterative deepening until
+ *                            time is up)
+ *   connect4.ybwc.splitDepth smallest remaining depth worth splitting
+ *                            (default 4)
+ *
+ */
+public class YBWC implements Player, Instrumented {
+
+	static final int INFINITY = Searcher.INFINITY;
+
+	int id;
+	int opponent_id;
+	int[] centerOut;
+	int fixedDepth;
+	int splitDepth;
+	ForkJoinPool pool;
+	private static final SharedPool sharedPool = new SharedPool();
+
+	// Number of positions visited, for comparing tweaks.
+	final LongAdder nodes = new LongAdder();
+
+	// What the last move's search did.
+	private final SearchStats stats = new SearchStats();
+	private long nodesBefore;
+
+
+	@Override
+	public String name() {
+		return "Young Brother";
+	}
+
+	@Override
+	public void init(int id, int msecPerMove, int rows, int cols) {
+		this.id = id;
+		this.opponent_id = 3 - id;
+		this.centerOut = MoveOrderer.centerOut(cols);
+		this.fixedDepth = Integer.getInteger("connect4.ybwc.depth", 0);
+		this.splitDepth = Math.max(1, Integer.getInteger("connect4.ybwc.splitDepth", 4));
+		this.pool = sharedPool.get(Math.max(1, Integer.getInteger("connect4.ybwc.threads",
+				Runtime.getRuntime().availableProcessors())));
+	}
+
+	@Override
+	public void calcMove(
+			Connect4Board board, int oppMoveCol, Arbitrator arb)
+					throws TimeUpException {
+		if (board.isFull()) {
+			throw new Error ("Complaint: The board is full!");
+		}
+		int[] order = new int[board.numCols()];
+		int n = 0;
+		for (int col : centerOut) {
+			if (board.isValidMove(col)) order[n++] = col;
+		}
+		order = java.util.Arrays.copyOf(order, n);
+		arb.setMove(order[0]);
+
+		stats.start();
+		nodesBefore = nodes.sum();
+		int first = (fixedDepth > 0) ? Math.min(fixedDepth, board.numEmptyCells()) : 1;
+		int last = (fixedDepth > 0) ? first : board.numEmptyCells();
+		try {
+			for (int depth = first; depth <= last; depth++) {
+				Node root = new Node(board, order, depth, 0, -INFINITY, INFINITY, true, arb);
+				int score = pool.invoke(root);
+				if (root.timeUp) {
+					throw new TimeUpException();
+				}
+				int best = root.bestCol;
+				// Search the best column first next time.
+				int i = 0;
+				while (order[i] != best) i++;
+				System.arraycopy(order, 0, order, 1, i);
+				order[0] = best;
+				arb.setMove(best);
+				arb.setProgress(depth, score);
+				stats.iterationDone(depth);
+			}
+		}
+		catch (TimeUpException e) {
+			// Keep the move from the last completed depth.
+		}
+		finally {
+			stats.stop();
+		}
+	}
+
+	@Override
+	public SearchStats lastSearch() {
+		stats.nodes = nodes.sum() - nodesBefore;
+		return stats;
+	}
+
+	// Fail-hard alpha-beta search of one node.  Children are searched in the
+	// given order (or center-out when order is null), the eldest first, and
+	// the younger brothers in parallel when enough depth remains.
+	@SuppressWarnings("serial")
+	private class Node extends RecursiveTask<Integer> {
+		final Connect4Board board;
+		final int[] order;
+		final int depth, ply, α, β;
+		final boolean isMaximizing;
+		final Arbitrator arb;
+		int bestCol = -1;
+		boolean timeUp;
+
+		Node(Connect4Board board, int[] order, int depth, int ply, int α, int β, boolean isMaximizing, Arbitrator arb) {
+			this.board = board;
+			this.order = order;
+			this.depth = depth;
+			this.ply = ply;
+			this.α = α;
+			this.β = β;
+			this.isMaximizing = isMaximizing;
+			this.arb = arb;
+		}
+
+		@Override
+		protected Integer compute() {
+			try {
+				return search();
+			}
+			catch (TimeUpException e) {
+				timeUp = true;
+				return 0;
+			}
+		}
+
+		private int search() throws TimeUpException {
+			nodes.increment();
+			arb.checkTime();
+			if (depth == 0 || board.isFull()) {
+				return clamp(board.score(id) - board.score(opponent_id));
+			}
+			int mover = isMaximizing ? id : opponent_id;
+			int[] moves = (order != null) ? order : validMoves(board);
+			// The root always splits so that it can tell us the best column.
+			if (depth < splitDepth && order == null) {
+				return serial(board, moves, depth, α, β, isMaximizing, mover, arb);
+			}
+
+			// Eldest brother first, on this thread.
+			int a = α, b = β;
+			int col = moves[0];
+			board.move(col, mover);
+			Node eldest = new Node(board, null, depth - 1, ply + 1, a, b, !isMaximizing, arb);
+			int score;
+			try {
+				score = eldest.search();
+			}
+			finally {
+				board.unmove(col, mover);
+			}
+			bestCol = col;
+			if (isMaximizing) {
+				if (score >= b) return b;
+				if (score > a) a = score;
+			}
+			else {
+				if (score <= a) return a;
+				if (score < b) b = score;
+			}
+			if (moves.length == 1) {
+				return isMaximizing ? a : b;
+			}
+
+			// Then the younger brothers, all with the window the eldest left
+			// us, each on its own copy of the board.
+			List<Node> brothers = new ArrayList<>();
+			for (int i = 1; i < moves.length; i++) {
+				Connect4Board copy = new Connect4Board(board);
+				copy.move(moves[i], mover);
+				brothers.add(new Node(copy, null, depth - 1, ply + 1, a, b, !isMaximizing, arb));
+			}
+			invokeAll(brothers);
+
+			// Fold the results in order, as a serial search would, so ties
+			// go to the earlier column.
+			for (int i = 0; i < brothers.size(); i++) {
+				Node brother = brothers.get(i);
+				if (brother.timeUp) {
+					throw new TimeUpException();
+				}
+				int v = brother.join();
+				if (isMaximizing) {
+					if (v >= b) { bestCol = moves[i+1]; return b; }
+					if (v > a) { a = v; bestCol = moves[i+1]; }
+				}
+				else {
+					if (v <= a) { bestCol = moves[i+1]; return a; }
+					if (v < b) { b = v; bestCol = moves[i+1]; }
+				}
+			}
+			return isMaximizing ? a : b;
+		}
+
+		private int clamp(int score) {
+			return Math.max(α, Math.min(β, score));
+		}
+	}
+
+	// Plain serial fail-hard alpha-beta, used below the split depth.
+	private int serial(Connect4Board board, int[] moves, int depth, int α, int β, boolean isMaximizing, int mover, Arbitrator arb)
+			throws TimeUpException {
+		for (int col : moves) {
+			if (!board.isValidMove(col)) continue;
+			board.move(col, mover);
+			int score;
+			try {
+				score = serial(board, depth - 1, α, β, !isMaximizing, arb);
+			}
+			finally {
+				board.unmove(col, mover);
+			}
+			if (isMaximizing) {
+				if (score >= β) return β;
+				if (score > α) α = score;
+			}
+			else {
+				if (score <= α) return α;
+				if (score < β) β = score;
+			}
+		}
+		return isMaximizing ? α : β;
+	}
+
+	private int serial(Connect4Board board, int depth, int α, int β, boolean isMaximizing, Arbitrator arb)
+			throws TimeUpException {
+		nodes.increment();
+		arb.checkTime();
+		if (depth == 0 || board.isFull()) {
+			return Math.max(α, Math.min(β, board.score(id) - board.score(opponent_id)));
+		}
+		return serial(board, centerOut, depth, α, β, isMaximizing,
+				isMaximizing ? id : opponent_id, arb);
+	}
+
+	private int[] validMoves(Connect4Board board) {
+		int n = 0;
+		for (int col : centerOut) {
+			if (board.isValidMove(col)) n++;
+		}
+		int[] moves = new int[n];
+		n = 0;
+		for (int col : centerOut) {
+			if (board.isValidMove(col)) moves[n++] = col;
+		}
+		return moves;
+	}
+}